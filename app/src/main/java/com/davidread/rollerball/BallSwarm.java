@@ -0,0 +1,677 @@
+package com.davidread.rollerball;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.PointF;
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * {@link BallSwarm} represents the many balls of a Rollerball game in chaos mode. Every ball is
+ * driven by the same tilt and balls push each other apart when they touch. Ball state is kept in
+ * primitive arrays and each tick is split across a small fixed pool of worker threads, one per
+ * core, that sync on a barrier between phases:
+ * <ol>
+ * <li>Integrate: move each ball by the tilt, keep it on the surface, and count the balls of each
+ * worker's share per cell of a uniform grid one ball wide.</li>
+ * <li>Hash: turn the counts into start indices with a prefix sum over cells, each worker taking a
+ * range of cells, then have each worker place its own balls. Balls within a cell stay in index
+ * order, so the result doesn't depend on the number of workers.</li>
+ * <li>Resolve: each ball sums the push from overlapping balls in its neighbouring cells. A ball
+ * only writes its own correction, so workers never contend.</li>
+ * <li>Apply: add corrections, knock out balls touching a wall, and look for a ball at the
+ * bottom.</li>
+ * </ol>
+ */
+public class BallSwarm {
+
+    /**
+     * Int constant representing the most threads, including the game loop thread, that work on a
+     * tick.
+     */
+    public static final int MAX_WORKERS = 8;
+
+    /**
+     * Int constant representing the smallest radius a ball in this {@link BallSwarm} can have.
+     */
+    public static final int MIN_RADIUS = 4;
+
+    /**
+     * Int holding the radius of every ball in this {@link BallSwarm}.
+     */
+    private final int mRadius;
+
+    /**
+     * Int holding the number of balls in this {@link BallSwarm}.
+     */
+    private final int mCount;
+
+    /**
+     * Float arrays holding the center coordinates of each ball.
+     */
+    private final float[] mX, mY;
+
+    /**
+     * Float arrays holding the collision correction computed for each ball this tick.
+     */
+    private final float[] mCorrectionX, mCorrectionY;
+
+    /**
+     * Boolean array holding whether each ball is still in play.
+     */
+    private final boolean[] mAlive;
+
+    /**
+     * Int holding the width of the {@link RollerSurfaceView} displaying this {@link BallSwarm}.
+     */
+    private final int mSurfaceWidth;
+
+    /**
+     * Int holding the height of the {@link RollerSurfaceView} displaying this {@link BallSwarm}.
+     */
+    private final int mSurfaceHeight;
+
+    /**
+     * Int holding the width and height of a spatial hash cell.
+     */
+    private final int mCellSize;
+
+    /**
+     * Ints holding the number of spatial hash cell columns and rows covering the surface.
+     */
+    private final int mColumns, mRows;
+
+    /**
+     * Int holding the number of spatial hash cells, {@link #mColumns} times {@link #mRows}.
+     */
+    private final int mCells;
+
+    /**
+     * Int array holding, for each cell, the index in {@link #mCellBalls} where its balls start.
+     * The extra last entry marks the end of the last cell.
+     */
+    private final int[] mCellStart;
+
+    /**
+     * Int array holding, for each worker and cell at {@code worker * mCells + cell}, the number
+     * of the worker's live balls in the cell. Turned in place into the worker's write cursor in
+     * {@link #mCellBalls} for the cell.
+     */
+    private final int[] mCellCursor;
+
+    /**
+     * Int array holding the number of live balls in each worker's range of cells.
+     */
+    private final int[] mWorkerCellTotal;
+
+    /**
+     * Int array holding live ball indices sorted by cell.
+     */
+    private final int[] mCellBalls;
+
+    /**
+     * Int array holding the cell of each ball this tick.
+     */
+    private final int[] mBallCell;
+
+    /**
+     * Int holding the number of threads, including the game loop thread, that work on a tick.
+     */
+    private final int mParties;
+
+    /**
+     * {@link CyclicBarrier} all working threads meet at between tick phases.
+     */
+    private final CyclicBarrier mBarrier;
+
+    /**
+     * {@link Thread} array holding the worker threads that help the game loop thread.
+     */
+    private final Thread[] mWorkers;
+
+    /**
+     * Whether the worker threads should exit.
+     */
+    private volatile boolean mReleased;
+
+    /**
+     * Floats holding the tilt applied to every ball this tick.
+     */
+    private float mVelocityX, mVelocityY;
+
+    /**
+     * {@link ArrayList} of {@link Wall}s balls are checked against this tick.
+     */
+    private ArrayList<Wall> mWalls;
+
+    /**
+     * Int holding the number of {@link Wall}s in {@link #mWalls} that are in play.
+     */
+    private int mWallCount;
+
+    /**
+     * Int array holding the number of live balls each worker counted this tick.
+     */
+    private final int[] mWorkerAlive;
+
+    /**
+     * Boolean array holding whether each worker saw a ball reach the bottom this tick.
+     */
+    private final boolean[] mWorkerWon;
+
+    /**
+     * Int holding the number of live balls after the last tick.
+     */
+    private int mAliveCount;
+
+    /**
+     * Whether a ball reached the bottom of the surface in the last tick.
+     */
+    private boolean mWon;
+
+    /**
+     * {@link Paint} used to draw the balls on a {@link Canvas}.
+     */
+    private final Paint mPaint;
+
+    /**
+     * Constructs a new {@link BallSwarm} and starts its worker threads. One thread is used per
+     * core, up to {@link #MAX_WORKERS} and no more than there are balls. Call {@link #release()}
+     * when it is no longer needed.
+     *
+     * @param count         The number of balls.
+     * @param surfaceWidth  The surface width of this {@link BallSwarm}.
+     * @param surfaceHeight The surface height of this {@link BallSwarm}.
+     * @param spawnHeight   The height of the band at the top of the surface that balls start in.
+     */
+    public BallSwarm(int count, int surfaceWidth, int surfaceHeight, int spawnHeight) {
+        this(count, spawnRadius(count, surfaceWidth, spawnHeight), surfaceWidth, surfaceHeight,
+                Math.min(Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()),
+                        count));
+    }
+
+    /**
+     * Constructs a new {@link BallSwarm} with the passed ball radius and number of threads, and
+     * starts its worker threads. Call {@link #release()} when it is no longer needed.
+     *
+     * @param count         The number of balls.
+     * @param radius        The radius of every ball.
+     * @param surfaceWidth  The surface width of this {@link BallSwarm}.
+     * @param surfaceHeight The surface height of this {@link BallSwarm}.
+     * @param parties       The number of threads, including the game loop thread, that work on a
+     *                      tick.
+     */
+    BallSwarm(int count, int radius, int surfaceWidth, int surfaceHeight, int parties) {
+        mCount = count;
+        mSurfaceWidth = surfaceWidth;
+        mSurfaceHeight = surfaceHeight;
+        mRadius = radius;
+
+        mX = new float[count];
+        mY = new float[count];
+        mCorrectionX = new float[count];
+        mCorrectionY = new float[count];
+        mAlive = new boolean[count];
+
+        // A cell one ball wide means touching balls are always in neighbouring cells.
+        mCellSize = 2 * mRadius;
+        mColumns = surfaceWidth / mCellSize + 1;
+        mRows = surfaceHeight / mCellSize + 1;
+        mCells = mColumns * mRows;
+
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setColor(0xffaaaaff);
+
+        // Game loop thread does one share of the work, workers do the rest.
+        mParties = Math.max(1, parties);
+        mCellStart = new int[mCells + 1];
+        mCellCursor = new int[mParties * mCells];
+        mWorkerCellTotal = new int[mParties];
+        mCellBalls = new int[count];
+        mBallCell = new int[count];
+        mBarrier = new CyclicBarrier(mParties);
+        mWorkerAlive = new int[mParties];
+        mWorkerWon = new boolean[mParties];
+        mWorkers = new Thread[mParties - 1];
+        for (int c = 0; c < mWorkers.length; c++) {
+            final int worker = c + 1;
+            mWorkers[c] = new Thread(() -> runWorker(worker), "RollerWorker-" + worker);
+            mWorkers[c].setDaemon(true);
+            mWorkers[c].start();
+        }
+
+        reset();
+    }
+
+    /**
+     * Puts every ball back in play in rows at the top of the surface.
+     */
+    public void reset() {
+        int perRow = Math.max(1, mSurfaceWidth / mCellSize);
+        for (int c = 0; c < mCount; c++) {
+            mX[c] = mRadius + (c % perRow) * mCellSize;
+            mY[c] = Math.min(mRadius + (c / perRow) * mCellSize, mSurfaceHeight - mRadius);
+            mAlive[c] = true;
+        }
+        mAliveCount = mCount;
+        mWon = false;
+    }
+
+    /**
+     * Moves every ball given one tick of the passed velocity and resolves collisions with other
+     * balls and the passed {@link Wall}s.
+     *
+     * @param velocity  {@link PointF} whose {@link PointF#x} is the x-velocity and whose
+     *                  {@link PointF#y} is the y-velocity.
+     * @param walls     {@link ArrayList} of {@link Wall}s to check against.
+     * @param wallCount The number of {@link Wall}s in the passed list that are in play.
+     */
+    public void update(PointF velocity, ArrayList<Wall> walls, int wallCount) {
+
+        // Publish tick input. The barrier makes it visible to the workers.
+        mVelocityX = velocity.x;
+        mVelocityY = velocity.y;
+        mWalls = walls;
+        mWallCount = wallCount;
+
+        try {
+            sync();
+            tick(0);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (BrokenBarrierException ex) {
+            throw new IllegalStateException("Worker left the tick early", ex);
+        }
+
+        // Combine worker results.
+        mAliveCount = 0;
+        for (int c = 0; c < mParties; c++) {
+            mAliveCount += mWorkerAlive[c];
+            mWon |= mWorkerWon[c];
+        }
+    }
+
+    /**
+     * Draws every ball still in play on the passed {@link Canvas}.
+     *
+     * @param canvas {@link Canvas} on which to draw the balls.
+     */
+    public void draw(Canvas canvas) {
+        for (int c = 0; c < mCount; c++) {
+            if (mAlive[c]) {
+                canvas.drawCircle(mX[c], mY[c], mRadius, mPaint);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of balls still in play.
+     *
+     * @return The number of balls still in play.
+     */
+    public int getAliveCount() {
+        return mAliveCount;
+    }
+
+    /**
+     * Returns true if a ball has reached the bottom of the surface.
+     *
+     * @return True if a ball has reached the bottom of the surface.
+     */
+    public boolean hasWon() {
+        return mWon;
+    }
+
+    /**
+     * Returns the radius of every ball.
+     *
+     * @return The radius of every ball.
+     */
+    int getRadius() {
+        return mRadius;
+    }
+
+    /**
+     * Returns the number of threads, including the game loop thread, that work on a tick.
+     *
+     * @return The number of threads that work on a tick.
+     */
+    int getParties() {
+        return mParties;
+    }
+
+    /**
+     * Returns the x-coordinate of the passed ball's center.
+     *
+     * @param ball Index of the ball.
+     * @return The x-coordinate of the ball's center.
+     */
+    float getX(int ball) {
+        return mX[ball];
+    }
+
+    /**
+     * Returns the y-coordinate of the passed ball's center.
+     *
+     * @param ball Index of the ball.
+     * @return The y-coordinate of the ball's center.
+     */
+    float getY(int ball) {
+        return mY[ball];
+    }
+
+    /**
+     * Returns true if the passed ball is still in play.
+     *
+     * @param ball Index of the ball.
+     * @return True if the ball is still in play.
+     */
+    boolean isAlive(int ball) {
+        return mAlive[ball];
+    }
+
+    /**
+     * Moves the passed ball's center to the passed position.
+     *
+     * @param ball Index of the ball.
+     * @param x    x-coordinate of the center.
+     * @param y    y-coordinate of the center.
+     */
+    void setCenter(int ball, float x, float y) {
+        mX[ball] = x;
+        mY[ball] = y;
+    }
+
+    /**
+     * Stops the worker threads and waits for them to exit. This {@link BallSwarm} must not be
+     * updated afterwards.
+     */
+    public void release() {
+        if (mReleased) return;
+        mReleased = true;
+
+        try {
+            // Wake the workers waiting for the next tick so they see the release.
+            mBarrier.await();
+            for (Thread worker : mWorkers) {
+                worker.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (BrokenBarrierException ex) {
+            // Workers have already left.
+        }
+    }
+
+    /**
+     * Loop run by each worker thread. It waits for a tick to start and does its share of it.
+     *
+     * @param worker Index of this worker, from 1 to {@link #mParties} - 1.
+     */
+    private void runWorker(int worker) {
+        try {
+            while (true) {
+                mBarrier.await();
+                if (mReleased) return;
+                tick(worker);
+            }
+        } catch (InterruptedException | BrokenBarrierException ex) {
+            // Swarm is going away.
+        }
+    }
+
+    /**
+     * Does one thread's share of a tick. Every thread calls this with its own index and they
+     * meet at {@link #mBarrier} after each phase.
+     *
+     * @param worker Index of the calling thread, where 0 is the game loop thread.
+     * @throws InterruptedException   If the calling thread is interrupted while waiting.
+     * @throws BrokenBarrierException If another thread left the tick.
+     */
+    private void tick(int worker) throws InterruptedException, BrokenBarrierException {
+        int from = (int) ((long) mCount * worker / mParties);
+        int to = (int) ((long) mCount * (worker + 1) / mParties);
+        int cellFrom = (int) ((long) mCells * worker / mParties);
+        int cellTo = (int) ((long) mCells * (worker + 1) / mParties);
+
+        integrate(worker, from, to);
+        sync();
+
+        countCells(worker, cellFrom, cellTo);
+        sync();
+
+        startCells(worker, cellFrom, cellTo);
+        sync();
+
+        placeBalls(worker, from, to);
+        sync();
+
+        resolve(from, to);
+        sync();
+
+        apply(worker, from, to);
+        sync();
+    }
+
+    /**
+     * Waits at {@link #mBarrier} for the other threads working on a tick. Returns at once when the
+     * game loop thread works alone.
+     *
+     * @throws InterruptedException   If the calling thread is interrupted while waiting.
+     * @throws BrokenBarrierException If another thread left the tick.
+     */
+    private void sync() throws InterruptedException, BrokenBarrierException {
+        if (mParties > 1) {
+            mBarrier.await();
+        }
+    }
+
+    /**
+     * Moves balls in the passed range by the tilt, keeps them on the surface, and counts them
+     * per cell in the calling worker's row of {@link #mCellCursor}.
+     *
+     * @param worker Index of the calling thread.
+     * @param from   Index of the first ball, inclusive.
+     * @param to     Index of the last ball, exclusive.
+     */
+    private void integrate(int worker, int from, int to) {
+        int row = worker * mCells;
+        Arrays.fill(mCellCursor, row, row + mCells, 0);
+
+        for (int c = from; c < to; c++) {
+            if (!mAlive[c]) continue;
+            mX[c] = clamp(mX[c] - mVelocityX, mRadius, mSurfaceWidth - mRadius);
+            mY[c] = clamp(mY[c] + mVelocityY, mRadius, mSurfaceHeight - mRadius);
+
+            int cell = (int) (mY[c] / mCellSize) * mColumns + (int) (mX[c] / mCellSize);
+            mBallCell[c] = cell;
+            mCellCursor[row + cell]++;
+        }
+    }
+
+    /**
+     * Counts the live balls of every worker in the passed range of cells.
+     *
+     * @param worker   Index of the calling thread.
+     * @param cellFrom Index of the first cell, inclusive.
+     * @param cellTo   Index of the last cell, exclusive.
+     */
+    private void countCells(int worker, int cellFrom, int cellTo) {
+        int total = 0;
+        for (int w = 0; w < mParties; w++) {
+            int row = w * mCells;
+            for (int cell = cellFrom; cell < cellTo; cell++) {
+                total += mCellCursor[row + cell];
+            }
+        }
+        mWorkerCellTotal[worker] = total;
+    }
+
+    /**
+     * Turns the counts in the passed range of cells into start indices in {@link #mCellStart}
+     * and into each worker's write cursor in {@link #mCellCursor}. Within a cell, lower workers,
+     * and so lower ball indices, come first.
+     *
+     * @param worker   Index of the calling thread.
+     * @param cellFrom Index of the first cell, inclusive.
+     * @param cellTo   Index of the last cell, exclusive.
+     */
+    private void startCells(int worker, int cellFrom, int cellTo) {
+
+        // Balls in earlier ranges of cells come first.
+        int start = 0;
+        for (int w = 0; w < worker; w++) {
+            start += mWorkerCellTotal[w];
+        }
+
+        for (int cell = cellFrom; cell < cellTo; cell++) {
+            mCellStart[cell] = start;
+            for (int w = 0; w < mParties; w++) {
+                int count = mCellCursor[w * mCells + cell];
+                mCellCursor[w * mCells + cell] = start;
+                start += count;
+            }
+        }
+
+        // Last range also marks the end of the last cell.
+        if (worker == mParties - 1) {
+            mCellStart[mCells] = start;
+        }
+    }
+
+    /**
+     * Places live balls in the passed range into {@link #mCellBalls} by cell.
+     *
+     * @param worker Index of the calling thread.
+     * @param from   Index of the first ball, inclusive.
+     * @param to     Index of the last ball, exclusive.
+     */
+    private void placeBalls(int worker, int from, int to) {
+        int row = worker * mCells;
+        for (int c = from; c < to; c++) {
+            if (!mAlive[c]) continue;
+            mCellBalls[mCellCursor[row + mBallCell[c]]++] = c;
+        }
+    }
+
+    /**
+     * Computes the correction that pushes each ball in the passed range out of the balls it
+     * overlaps. Each overlapping pair is pushed apart by half the overlap from each side.
+     *
+     * @param from Index of the first ball, inclusive.
+     * @param to   Index of the last ball, exclusive.
+     */
+    private void resolve(int from, int to) {
+        float minDistance = 2 * mRadius;
+        float minDistanceSquared = minDistance * minDistance;
+
+        for (int c = from; c < to; c++) {
+            mCorrectionX[c] = 0;
+            mCorrectionY[c] = 0;
+            if (!mAlive[c]) continue;
+
+            int column = mBallCell[c] % mColumns;
+            int row = mBallCell[c] / mColumns;
+
+            // Check this cell and its eight neighbours.
+            for (int r = Math.max(0, row - 1); r <= Math.min(mRows - 1, row + 1); r++) {
+                for (int k = Math.max(0, column - 1); k <= Math.min(mColumns - 1, column + 1); k++) {
+                    int cell = r * mColumns + k;
+                    for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++) {
+                        int other = mCellBalls[i];
+                        if (other == c) continue;
+
+                        float deltaX = mX[c] - mX[other];
+                        float deltaY = mY[c] - mY[other];
+                        float distanceSquared = deltaX * deltaX + deltaY * deltaY;
+                        if (distanceSquared >= minDistanceSquared) continue;
+
+                        // Balls exactly on top of each other are split by index.
+                        if (distanceSquared == 0) {
+                            mCorrectionX[c] += c < other ? -mRadius : mRadius;
+                            continue;
+                        }
+
+                        float distance = (float) Math.sqrt(distanceSquared);
+                        float push = (minDistance - distance) / 2 / distance;
+                        mCorrectionX[c] += deltaX * push;
+                        mCorrectionY[c] += deltaY * push;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies corrections to balls in the passed range, knocks out balls touching a wall, and
+     * records this worker's live ball count and whether it saw a ball at the bottom.
+     *
+     * @param worker Index of the calling thread.
+     * @param from   Index of the first ball, inclusive.
+     * @param to     Index of the last ball, exclusive.
+     */
+    private void apply(int worker, int from, int to) {
+        int alive = 0;
+        boolean won = false;
+        int radiusSquared = mRadius * mRadius;
+
+        for (int c = from; c < to; c++) {
+            if (!mAlive[c]) continue;
+            mX[c] = clamp(mX[c] + mCorrectionX[c], mRadius, mSurfaceWidth - mRadius);
+            mY[c] = clamp(mY[c] + mCorrectionY[c], mRadius, mSurfaceHeight - mRadius);
+
+            // Find point on each wall that is closest to ball center, as in Ball#intersects.
+            int x = (int) mX[c];
+            int y = (int) mY[c];
+            for (int w = 0; w < mWallCount; w++) {
+                Rect rect = mWalls.get(w).getRect();
+                int deltaX = x - Math.max(rect.left, Math.min(x, rect.right));
+                int deltaY = y - Math.max(rect.top, Math.min(y, rect.bottom));
+                if (deltaX * deltaX + deltaY * deltaY < radiusSquared) {
+                    mAlive[c] = false;
+                    break;
+                }
+            }
+            if (!mAlive[c]) continue;
+
+            alive++;
+            if (y + mRadius >= mSurfaceHeight) {
+                won = true;
+            }
+        }
+
+        mWorkerAlive[worker] = alive;
+        mWorkerWon[worker] = won;
+    }
+
+    /**
+     * Returns a ball radius that lets the passed number of balls sit side by side in the spawn
+     * band.
+     *
+     * @param count        The number of balls.
+     * @param surfaceWidth The surface width.
+     * @param spawnHeight  The height of the band at the top of the surface that balls start in.
+     * @return The ball radius, at least {@link #MIN_RADIUS}.
+     */
+    private static int spawnRadius(int count, int surfaceWidth, int spawnHeight) {
+        int spacing = (int) Math.sqrt((double) surfaceWidth * spawnHeight / count);
+        return Math.max(MIN_RADIUS, spacing / 2 - 1);
+    }
+
+    /**
+     * Returns the passed value limited to the passed range.
+     *
+     * @param value Value to limit.
+     * @param min   Smallest allowed value.
+     * @param max   Largest allowed value.
+     * @return The limited value.
+     */
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : Math.min(value, max);
+    }
+}
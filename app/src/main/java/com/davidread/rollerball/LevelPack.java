@@ -0,0 +1,245 @@
+package com.davidread.rollerball;
+
+import android.content.res.AssetFileDescriptor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link LevelPack} represents a read-only file of designed Rollerball levels. The file is memory
+ * mapped when opened and each level is only decoded when it is selected, directly into pooled
+ * {@link Ball} and {@link Wall} objects. Opening a pack and selecting a level take the same time
+ * regardless of how many levels the pack holds.
+ * <p>
+ * Packs shipped as APK assets must be stored uncompressed (see {@code noCompress} in the app's
+ * build.gradle) so {@link #open(AssetFileDescriptor)} can map them in place.
+ * <p>
+ * All values are big-endian. Positions and sizes are stored in thousandths of the surface width
+ * or height so a level fits any screen.
+ * <pre>
+ * Header:   int magic ("RBLP"), int version, int level count
+ * Index:    int offset of each level record, one per level
+ * Level:    u16 ball x, u16 ball y, u8 wall count, followed by wall count wall records
+ * Wall:     u16 x, u16 y, u16 width, u16 height, u16 speed, u8 flags (bit 0 = moving right)
+ * </pre>
+ */
+public class LevelPack {
+
+    /**
+     * Int constant representing the magic number at the start of every level pack.
+     */
+    public static final int MAGIC = 0x52424C50;
+
+    /**
+     * Int constant representing the level pack format version this class can read.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Int constant representing the number of bytes in the level pack header.
+     */
+    public static final int HEADER_SIZE = 12;
+
+    /**
+     * Int constant representing the number of bytes in a level record before its wall records.
+     */
+    public static final int LEVEL_HEADER_SIZE = 5;
+
+    /**
+     * Int constant representing the number of bytes in a single wall record.
+     */
+    public static final int WALL_RECORD_SIZE = 11;
+
+    /**
+     * Int constant representing the denominator that positions and sizes are stored against.
+     */
+    public static final int SCALE = 1000;
+
+    /**
+     * Int constant representing the flag bit set when a wall initially moves right.
+     */
+    public static final int FLAG_RIGHT = 0x01;
+
+    /**
+     * {@link MappedByteBuffer} holding the contents of the level pack file.
+     */
+    private final MappedByteBuffer mBuffer;
+
+    /**
+     * Int holding the number of levels in this {@link LevelPack}.
+     */
+    private final int mLevelCount;
+
+    /**
+     * Constructs a new {@link LevelPack}.
+     *
+     * @param buffer     {@link MappedByteBuffer} holding the contents of the level pack file.
+     * @param levelCount The number of levels in the level pack file.
+     */
+    private LevelPack(MappedByteBuffer buffer, int levelCount) {
+        mBuffer = buffer;
+        mLevelCount = levelCount;
+    }
+
+    /**
+     * Opens the passed level pack file by memory mapping it. Only the header is read; levels are
+     * decoded later by {@link #decodeBall(int, Ball, int, int)} and
+     * {@link #decodeWall(int, int, Wall, int, int)}.
+     *
+     * @param file Level pack {@link File} to open.
+     * @return A {@link LevelPack} backed by the passed file.
+     * @throws IOException If the file cannot be mapped or is not a valid level pack.
+     */
+    public static LevelPack open(File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file);
+             FileChannel channel = stream.getChannel()) {
+            return open(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Opens the level pack asset described by the passed {@link AssetFileDescriptor}, as returned
+     * by {@link android.content.res.AssetManager#openFd(String)}. The asset must be stored
+     * uncompressed in the APK so it can be memory mapped in place. The descriptor is closed once
+     * the asset is mapped.
+     *
+     * @param descriptor {@link AssetFileDescriptor} of the level pack asset.
+     * @return A {@link LevelPack} backed by the passed asset.
+     * @throws IOException If the asset cannot be mapped or is not a valid level pack.
+     */
+    public static LevelPack open(AssetFileDescriptor descriptor) throws IOException {
+        try (FileInputStream stream = descriptor.createInputStream();
+             FileChannel channel = stream.getChannel()) {
+            long length = descriptor.getLength();
+            if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+                length = channel.size() - descriptor.getStartOffset();
+            }
+            return open(channel, descriptor.getStartOffset(), length);
+        }
+    }
+
+    /**
+     * Opens a level pack stored in the passed range of a {@link FileChannel}, such as an
+     * uncompressed asset inside an APK, by memory mapping that range. The mapping stays valid
+     * after the channel is closed.
+     *
+     * @param channel {@link FileChannel} holding the level pack.
+     * @param offset  Offset of the level pack within the channel.
+     * @param length  Length of the level pack in bytes.
+     * @return A {@link LevelPack} backed by the passed range.
+     * @throws IOException If the range cannot be mapped or is not a valid level pack.
+     */
+    public static LevelPack open(FileChannel channel, long offset, long length)
+            throws IOException {
+        if (offset < 0 || length < 0 || length > Integer.MAX_VALUE
+                || offset > channel.size() - length) {
+            throw new IOException("Level pack range " + offset + "+" + length
+                    + " lies outside a file of " + channel.size() + " bytes");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+        // Validate header.
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a level pack");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported level pack version " + buffer.getInt(4));
+        }
+        int levelCount = buffer.getInt(8);
+        if (levelCount < 0 || (long) HEADER_SIZE + 4L * levelCount > buffer.capacity()) {
+            throw new IOException("Truncated level pack index");
+        }
+
+        return new LevelPack(buffer, levelCount);
+    }
+
+    /**
+     * Returns the number of levels in this {@link LevelPack}.
+     *
+     * @return The number of levels in this {@link LevelPack}.
+     */
+    public int getLevelCount() {
+        return mLevelCount;
+    }
+
+    /**
+     * Returns the number of walls in the passed level.
+     *
+     * @param level Index of the level.
+     * @return The number of walls in the passed level.
+     */
+    public int getWallCount(int level) {
+        return mBuffer.get(levelOffset(level) + 4) & 0xff;
+    }
+
+    /**
+     * Moves the passed {@link Ball} to the start position of the passed level.
+     *
+     * @param level         Index of the level.
+     * @param ball          {@link Ball} to move.
+     * @param surfaceWidth  The width of the {@link RollerSurfaceView} displaying the level.
+     * @param surfaceHeight The height of the {@link RollerSurfaceView} displaying the level.
+     */
+    public void decodeBall(int level, Ball ball, int surfaceWidth, int surfaceHeight) {
+        int offset = levelOffset(level);
+        ball.setCenter(scale(offset, surfaceWidth), scale(offset + 2, surfaceHeight));
+    }
+
+    /**
+     * Sets the passed {@link Wall} to the state of a wall in the passed level.
+     *
+     * @param level         Index of the level.
+     * @param wallIndex     Index of the wall within the level.
+     * @param wall          {@link Wall} to set.
+     * @param surfaceWidth  The width of the {@link RollerSurfaceView} displaying the level.
+     * @param surfaceHeight The height of the {@link RollerSurfaceView} displaying the level.
+     */
+    public void decodeWall(int level, int wallIndex, Wall wall, int surfaceWidth,
+                           int surfaceHeight) {
+        int offset = levelOffset(level);
+        int wallCount = mBuffer.get(offset + 4) & 0xff;
+        if (wallIndex < 0 || wallIndex >= wallCount) {
+            throw new IndexOutOfBoundsException("Wall " + wallIndex + " of " + wallCount);
+        }
+
+        // Read wall record in place without moving the buffer position.
+        int record = offset + LEVEL_HEADER_SIZE + wallIndex * WALL_RECORD_SIZE;
+        wall.set(scale(record, surfaceWidth), scale(record + 2, surfaceHeight),
+                scale(record + 4, surfaceWidth), scale(record + 6, surfaceHeight),
+                mBuffer.getShort(record + 8) & 0xffff,
+                (mBuffer.get(record + 10) & FLAG_RIGHT) != 0);
+    }
+
+    /**
+     * Returns the offset of the passed level's record within {@link #mBuffer}.
+     *
+     * @param level Index of the level.
+     * @return The offset of the passed level's record.
+     */
+    private int levelOffset(int level) {
+        if (level < 0 || level >= mLevelCount) {
+            throw new IndexOutOfBoundsException("Level " + level + " of " + mLevelCount);
+        }
+        int offset = mBuffer.getInt(HEADER_SIZE + 4 * level);
+        if (offset < 0 || offset > mBuffer.capacity() - LEVEL_HEADER_SIZE
+                || offset + LEVEL_HEADER_SIZE + (mBuffer.get(offset + 4) & 0xff)
+                * WALL_RECORD_SIZE > mBuffer.capacity()) {
+            throw new IllegalStateException("Level " + level + " lies outside the level pack");
+        }
+        return offset;
+    }
+
+    /**
+     * Reads an unsigned short at the passed offset and scales it to the passed surface dimension.
+     *
+     * @param offset    Offset within {@link #mBuffer} to read.
+     * @param dimension Surface width or height to scale to.
+     * @return The scaled value in pixels.
+     */
+    private int scale(int offset, int dimension) {
+        return (int) ((long) (mBuffer.getShort(offset) & 0xffff) * dimension / SCALE);
+    }
+}
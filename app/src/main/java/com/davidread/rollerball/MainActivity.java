@@ -7,12 +7,30 @@ import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.util.Log;
+
+import java.io.IOException;
 
 /**
  * {@link MainActivity} represents a user interface that allows the user to play a Rollerball game.
  */
 public class MainActivity extends AppCompatActivity implements SensorEventListener {
 
+    /**
+     * String constant representing the tag used for log messages.
+     */
+    private static final String TAG = "MainActivity";
+
+    /**
+     * String constant representing the name of the level pack asset played in order.
+     */
+    private static final String LEVEL_PACK_ASSET = "levels.rlp";
+
+    /**
+     * String constant representing the key of the current level in the saved instance state.
+     */
+    private static final String KEY_LEVEL = "level";
+
     /**
      * Int constant representing the threshold at which an accelerometer magnitude difference should
      * be considered a device shake.
@@ -34,14 +52,24 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
      */
     private RollerSurfaceView mSurfaceView;
 
+    /**
+     * {@link LevelPack} of the levels being played, or null if it could not be opened.
+     */
+    private LevelPack mLevelPack;
+
+    /**
+     * Int holding the index of the level being played in {@link #mLevelPack}.
+     */
+    private int mLevel;
+
     /**
      * Float holding the last reported accelerometer magnitude.
      */
     private float mLastAcceleration = SensorManager.GRAVITY_EARTH;
 
     /**
-     * Invoked once when {@link MainActivity} is initially created. It simply initializes member
-     * variables.
+     * Invoked once when {@link MainActivity} is initially created. It initializes member variables
+     * and starts the level played before the activity was recreated, or the first level.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,7 +80,46 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         mAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
 
         mSurfaceView = findViewById(R.id.rollerSurface);
-        mSurfaceView.setOnClickListener(view -> mSurfaceView.shake());
+        mSurfaceView.setOnClickListener(view -> nextLevel());
+        mSurfaceView.setOnLongClickListener(view -> {
+            mSurfaceView.toggleChaosMode();
+            return true;
+        });
+
+        // Fall back to randomly placed walls if the levels cannot be opened.
+        try {
+            mLevelPack = LevelPack.open(getAssets().openFd(LEVEL_PACK_ASSET));
+        } catch (IOException ex) {
+            Log.w(TAG, "Cannot open " + LEVEL_PACK_ASSET, ex);
+        }
+        if (mLevelPack != null && mLevelPack.getLevelCount() > 0) {
+            if (savedInstanceState != null) {
+                mLevel = savedInstanceState.getInt(KEY_LEVEL) % mLevelPack.getLevelCount();
+            }
+            mSurfaceView.loadLevel(mLevelPack, mLevel);
+        }
+    }
+
+    /**
+     * Invoked before {@link MainActivity} may be destroyed. It saves the level being played.
+     */
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putInt(KEY_LEVEL, mLevel);
+    }
+
+    /**
+     * Starts the next level in {@link #mLevelPack}, wrapping around after the last one. Starts a
+     * new game with randomly placed walls if no levels are available.
+     */
+    private void nextLevel() {
+        if (mLevelPack == null || mLevelPack.getLevelCount() == 0) {
+            mSurfaceView.shake();
+            return;
+        }
+        mLevel = (mLevel + 1) % mLevelPack.getLevelCount();
+        mSurfaceView.loadLevel(mLevelPack, mLevel);
     }
 
     /**
@@ -10,8 +10,10 @@ import java.util.ArrayList;
 import java.util.Random;
 
 /**
- * {@link RollerGame} represents the Rollerball game with a single ball and three walls. It has
- * methods for placing the walls in random vertical locations and determining when the game is over.
+ * {@link RollerGame} represents the Rollerball game with a ball and a set of walls. By default it
+ * plays with three walls placed at random; it can also load designed levels from a
+ * {@link LevelPack}, or switch to a chaos mode where a {@link BallSwarm} of many balls replaces
+ * the single ball. It also determines when the game is over.
  */
 public class RollerGame {
 
@@ -20,16 +22,42 @@ public class RollerGame {
      */
     public final int NUM_WALLS = 3;
 
+    /**
+     * Int constant representing the number of balls to spawn in chaos mode.
+     */
+    public final int NUM_CHAOS_BALLS = 500;
+
     /**
      * {@link Ball} used to represent the ball and draw it.
      */
     private Ball mBall;
 
     /**
-     * {@link ArrayList} of {@link Wall}s used to represent the walls and draw them.
+     * {@link BallSwarm} used in place of {@link #mBall} in chaos mode, or null otherwise.
+     */
+    private BallSwarm mBallSwarm;
+
+    /**
+     * {@link ArrayList} of {@link Wall}s used to represent the walls and draw them. Only the first
+     * {@link #mWallCount} are in play; the rest are pooled for reuse by later levels.
      */
     private ArrayList<Wall> mWalls;
 
+    /**
+     * Int holding the number of {@link Wall}s in {@link #mWalls} that are in play.
+     */
+    private int mWallCount;
+
+    /**
+     * {@link LevelPack} the current level is decoded from, or null for randomly placed walls.
+     */
+    private LevelPack mLevelPack;
+
+    /**
+     * Int holding the index of the current level in {@link #mLevelPack}.
+     */
+    private int mLevel;
+
     /**
      * Int holding the width of the {@link RollerSurfaceView} displaying this game.
      */
@@ -83,22 +111,138 @@ public class RollerGame {
             mWalls.add(new Wall(mRandom.nextInt(mSurfaceWidth), wallY * c,
                     initialRight, mSurfaceWidth, mSurfaceHeight));
         }
+        mWallCount = NUM_WALLS;
+
+        newGame();
+    }
+
+    /**
+     * Returns the width of the {@link RollerSurfaceView} displaying this game.
+     *
+     * @return The width of the {@link RollerSurfaceView} displaying this game.
+     */
+    public int getSurfaceWidth() {
+        return mSurfaceWidth;
+    }
+
+    /**
+     * Returns the height of the {@link RollerSurfaceView} displaying this game.
+     *
+     * @return The height of the {@link RollerSurfaceView} displaying this game.
+     */
+    public int getSurfaceHeight() {
+        return mSurfaceHeight;
+    }
+
+    /**
+     * Returns the {@link LevelPack} the current level is decoded from.
+     *
+     * @return The {@link LevelPack} of the current level, or null for randomly placed walls.
+     */
+    public LevelPack getLevelPack() {
+        return mLevelPack;
+    }
+
+    /**
+     * Returns the index of the current level in {@link #getLevelPack()}.
+     *
+     * @return The index of the current level.
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Selects a level from the passed {@link LevelPack} and starts a new game on it. The current
+     * level stays in play if the passed one can't be decoded.
+     *
+     * @param levelPack {@link LevelPack} to decode the level from.
+     * @param level     Index of the level in the passed {@link LevelPack}.
+     * @throws IndexOutOfBoundsException If the passed level is not in the passed
+     *                                   {@link LevelPack}.
+     * @throws IllegalStateException     If the passed level's record is corrupt.
+     */
+    public void loadLevel(LevelPack levelPack, int level) {
+
+        // Checks the whole level record before switching to it.
+        levelPack.getWallCount(level);
 
+        mLevelPack = levelPack;
+        mLevel = level;
         newGame();
     }
 
+    /**
+     * Switches chaos mode on or off, starting a new game in the chosen mode. Call from the thread
+     * that updates this {@link RollerGame}.
+     */
+    public void toggleChaosMode() {
+        if (mBallSwarm == null) {
+            mBallSwarm = new BallSwarm(NUM_CHAOS_BALLS, mSurfaceWidth, mSurfaceHeight,
+                    mSurfaceHeight / (NUM_WALLS + 1));
+        } else {
+            release();
+        }
+        newGame();
+    }
+
+    /**
+     * Returns true if this {@link RollerGame} is in chaos mode.
+     *
+     * @return True if this {@link RollerGame} is in chaos mode.
+     */
+    public boolean isChaosMode() {
+        return mBallSwarm != null;
+    }
+
+    /**
+     * Stops any background workers used by this {@link RollerGame}. Call when the game loop ends.
+     */
+    public void release() {
+        if (mBallSwarm != null) {
+            mBallSwarm.release();
+            mBallSwarm = null;
+        }
+    }
+
     /**
      * Resets the state of this {@link RollerGame}.
      */
     public void newGame() {
         mGameOver = false;
 
+        if (mBallSwarm != null) {
+            mBallSwarm.reset();
+        }
+
+        if (mLevelPack != null) {
+            decodeLevel();
+            return;
+        }
+
         // Reset ball at the top of the screen.
         mBall.setCenter(mSurfaceWidth / 2, mBall.RADIUS + 10);
 
         // Reset walls at random spots.
-        for (Wall wall : mWalls) {
-            wall.relocate(mRandom.nextInt(mSurfaceWidth));
+        for (int c = 0; c < mWallCount; c++) {
+            mWalls.get(c).relocate(mRandom.nextInt(mSurfaceWidth));
+        }
+    }
+
+    /**
+     * Resets the ball and walls to the start of the current level in {@link #mLevelPack}. Walls
+     * are taken from the pool in {@link #mWalls}, which only grows when a level has more walls than
+     * any level before it.
+     */
+    private void decodeLevel() {
+        mLevelPack.decodeBall(mLevel, mBall, mSurfaceWidth, mSurfaceHeight);
+
+        mWallCount = mLevelPack.getWallCount(mLevel);
+        while (mWalls.size() < mWallCount) {
+            mWalls.add(new Wall(0, 0, false, mSurfaceWidth, mSurfaceHeight));
+        }
+        for (int c = 0; c < mWallCount; c++) {
+            mLevelPack.decodeWall(mLevel, c, mWalls.get(c), mSurfaceWidth, mSurfaceHeight);
         }
     }
 
@@ -111,15 +255,20 @@ public class RollerGame {
 
         if (mGameOver) return;
 
+        if (mBallSwarm != null) {
+            updateChaos(velocity);
+            return;
+        }
+
         // Move ball and walls.
         mBall.move(velocity);
-        for (Wall wall : mWalls) {
-            wall.move();
+        for (int c = 0; c < mWallCount; c++) {
+            mWalls.get(c).move();
         }
 
         // Check for collision.
-        for (Wall wall : mWalls) {
-            if (mBall.intersects(wall)) {
+        for (int c = 0; c < mWallCount; c++) {
+            if (mBall.intersects(mWalls.get(c))) {
                 mGameOver = true;
             }
         }
@@ -130,6 +279,26 @@ public class RollerGame {
         }
     }
 
+    /**
+     * Updates the state of this {@link RollerGame} in chaos mode. The game is lost once every ball
+     * has hit a wall and won when any ball reaches the bottom.
+     *
+     * @param velocity {@link PointF} of accelerometer values.
+     */
+    private void updateChaos(PointF velocity) {
+
+        // Move walls, then all balls at once.
+        for (int c = 0; c < mWallCount; c++) {
+            mWalls.get(c).move();
+        }
+        mBallSwarm.update(velocity, mWalls, mWallCount);
+
+        // Check for loss or win.
+        if (mBallSwarm.getAliveCount() == 0 || mBallSwarm.hasWon()) {
+            mGameOver = true;
+        }
+    }
+
     /**
      * Draws the UI elements of this {@link RollerGame} onto the passed {@link Canvas}.
      *
@@ -141,13 +310,17 @@ public class RollerGame {
         canvas.drawColor(Color.WHITE);
 
         // Draw ball and walls.
-        mBall.draw(canvas);
-        for (Wall wall : mWalls) {
-            wall.draw(canvas);
+        if (mBallSwarm != null) {
+            mBallSwarm.draw(canvas);
+        } else {
+            mBall.draw(canvas);
+        }
+        for (int c = 0; c < mWallCount; c++) {
+            mWalls.get(c).draw(canvas);
         }
 
         // User win?
-        if (mBall.getBottom() >= mSurfaceHeight) {
+        if (mBallSwarm != null ? mBallSwarm.hasWon() : mBall.getBottom() >= mSurfaceHeight) {
             String text = "You won!";
             Rect textBounds = new Rect();
             mPaint.getTextBounds(text, 0, text.length(), textBounds);
@@ -13,10 +13,21 @@ public class RollerSurfaceView extends SurfaceView implements SurfaceHolder.Call
 
     /**
      * {@link RollerThread} that runs operations on a background thread that display game elements
-     * on this {@link RollerSurfaceView}.
+     * on this {@link RollerSurfaceView}. Lives while this view is attached to a window.
      */
     private RollerThread mRollerThread;
 
+    /**
+     * {@link LevelPack} of the selected level, or null for randomly placed walls. Passed on to
+     * every {@link #mRollerThread}, so a level can be selected before this view is attached.
+     */
+    private LevelPack mLevelPack;
+
+    /**
+     * Int holding the index of the selected level in {@link #mLevelPack}.
+     */
+    private int mLevel;
+
     /**
      * Constructs a new {@link RollerSurfaceView}.
      *
@@ -31,35 +42,70 @@ public class RollerSurfaceView extends SurfaceView implements SurfaceHolder.Call
     }
 
     /**
-     * Invoked immediately after this {@link SurfaceHolder} is created. It passes the
-     * {@link SurfaceHolder} to {@link #mRollerThread} so its operations can be done on a
-     * background thread.
+     * Invoked when this {@link RollerSurfaceView} is attached to a window. It starts
+     * {@link #mRollerThread}, which waits until a surface is attached to it, with the selected
+     * level.
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRollerThread = new RollerThread();
+        if (mLevelPack != null) {
+            mRollerThread.loadLevel(mLevelPack, mLevel);
+        }
+        mRollerThread.start();
+    }
+
+    /**
+     * Invoked when this {@link RollerSurfaceView} is detached from its window. The surface is
+     * destroyed by the superclass first, then {@link #mRollerThread} is stopped and waited on.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mRollerThread.quit();
+        mRollerThread = null;
+    }
+
+    /**
+     * Invoked immediately after this {@link SurfaceHolder} is created. It does nothing, since
+     * the surface is attached to {@link #mRollerThread} once its size is known in
+     * {@link #surfaceChanged(SurfaceHolder, int, int, int)}.
      *
      * @param holder {@link SurfaceHolder} whose surface is being created.
      */
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
-        mRollerThread = new RollerThread(holder);
-        mRollerThread.start();
     }
 
     /**
      * Invoked immediately after any structural changes (format or size) have been made to the
-     * {@link SurfaceHolder}. It does nothing.
+     * {@link SurfaceHolder}. It passes the {@link SurfaceHolder} to {@link #mRollerThread} so its
+     * operations can be done on a background thread.
+     *
+     * @param holder {@link SurfaceHolder} whose surface has changed.
+     * @param format New pixel format of the surface.
+     * @param width  New width of the surface.
+     * @param height New height of the surface.
      */
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        if (mRollerThread != null) {
+            mRollerThread.attachSurface(holder, width, height);
+        }
     }
 
     /**
-     * Invoked immediately before a {@link SurfaceHolder} is being destroyed. It stops the thread
-     * started in {@link #mRollerThread}.
+     * Invoked immediately before a {@link SurfaceHolder} is being destroyed. It detaches the
+     * surface from {@link #mRollerThread}, blocking until no frame is being drawn to it.
      *
      * @param holder {@link SurfaceHolder} whose surface is being destroyed.
      */
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
-        mRollerThread.stopThread();
+        if (mRollerThread != null) {
+            mRollerThread.detachSurface();
+        }
     }
 
     /**
@@ -82,4 +128,34 @@ public class RollerSurfaceView extends SurfaceView implements SurfaceHolder.Call
             mRollerThread.shake();
         }
     }
+
+    /**
+     * Notifies {@link #mRollerThread} to switch chaos mode on or off.
+     */
+    public void toggleChaosMode() {
+        if (mRollerThread != null) {
+            mRollerThread.toggleChaosMode();
+        }
+    }
+
+    /**
+     * Selects a level from a {@link LevelPack} and notifies {@link #mRollerThread} of it. The
+     * level is kept for any later {@link #mRollerThread}.
+     *
+     * @param levelPack {@link LevelPack} to decode the level from.
+     * @param level     Index of the level in the passed {@link LevelPack}.
+     * @throws IllegalArgumentException If the passed level is not in the passed
+     *                                  {@link LevelPack}.
+     */
+    public void loadLevel(LevelPack levelPack, int level) {
+        if (level < 0 || level >= levelPack.getLevelCount()) {
+            throw new IllegalArgumentException("Level " + level + " of "
+                    + levelPack.getLevelCount());
+        }
+        mLevelPack = levelPack;
+        mLevel = level;
+        if (mRollerThread != null) {
+            mRollerThread.loadLevel(levelPack, level);
+        }
+    }
 }
\ No newline at end of file
@@ -2,96 +2,356 @@ package com.davidread.rollerball;
 
 import android.graphics.Canvas;
 import android.graphics.PointF;
+import android.util.Log;
 import android.view.SurfaceHolder;
 
 /**
  * {@link RollerThread} is used to execute a game loop for a Rollerball game on a background thread.
  * {@link #mRollerGame} is continually updated with new game state and {@link #mSurfaceHolder} is
  * continually updated to display the UI associated with that game state.
+ * <p>
+ * One {@link RollerThread} lives for as long as its {@link RollerSurfaceView} is attached to a
+ * window. Surfaces are attached and detached as they are created and destroyed, and the loop sleeps
+ * while no surface is attached, so there is never more than one loop running for a view.
  */
 public class RollerThread extends Thread {
 
     /**
-     * {@link SurfaceHolder} being rendered in this {@link RollerThread} on a background thread.
+     * String constant representing the tag used for log messages.
+     */
+    private static final String TAG = "RollerThread";
+
+    /**
+     * Long constant representing how many milliseconds to wait before retrying when a surface
+     * cannot be locked.
+     */
+    private static final long RETRY_DELAY_MS = 16;
+
+    /**
+     * {@link Object} guarding the surface state shared with the UI thread.
+     */
+    private final Object mLock = new Object();
+
+    /**
+     * {@link SurfaceHolder} being rendered in this {@link RollerThread} on a background thread, or
+     * null while no surface is attached.
      */
     private SurfaceHolder mSurfaceHolder;
 
     /**
-     * {@link RollerGame} containing the logic and game state of the Rollerball game. Is updated
-     * in this {@link RollerThread} on a background thread.
+     * Int holding the width of the attached surface.
      */
-    private RollerGame mRollerGame;
+    private int mSurfaceWidth;
+
+    /**
+     * Int holding the height of the attached surface.
+     */
+    private int mSurfaceHeight;
 
     /**
-     * Whether this {@link RollerThread} is executing its operations in {@link #run()}.
+     * Whether a frame is being drawn to {@link #mSurfaceHolder}.
+     */
+    private boolean mDrawing;
+
+    /**
+     * Whether this {@link RollerThread} should keep executing its operations in {@link #run()}.
      */
     private boolean mThreadRunning;
 
     /**
-     * {@link PointF} to pass accelerometer values to {@link #mRollerGame} in a single object.
+     * {@link RollerGame} containing the logic and game state of the Rollerball game. Is only
+     * created and updated in this {@link RollerThread} on a background thread.
      */
-    private PointF mVelocity;
+    private RollerGame mRollerGame;
 
     /**
-     * Constructs a new {@link RollerThread}.
-     *
-     * @param holder {@link SurfaceHolder} being rendered in this {@link RollerThread} on a
-     *               background thread.
+     * {@link PointF} to pass accelerometer values to {@link #mRollerGame} in a single object. Is
+     * only used in this {@link RollerThread} on a background thread.
      */
-    public RollerThread(SurfaceHolder holder) {
-        mSurfaceHolder = holder;
-        mThreadRunning = true;
+    private final PointF mVelocity;
 
-        mVelocity = new PointF();
+    /**
+     * Floats holding the latest accelerometer values from the UI thread.
+     */
+    private float mPendingVelocityX, mPendingVelocityY;
+
+    /**
+     * Whether a device shake has happened since the last frame.
+     */
+    private boolean mPendingShake;
+
+    /**
+     * Int holding the number of chaos mode switches requested since the last frame.
+     */
+    private int mPendingChaosToggles;
 
-        // Create a ball with boundaries determined by SurfaceView.
-        Canvas canvas = mSurfaceHolder.lockCanvas();
-        mRollerGame = new RollerGame(canvas.getWidth(), canvas.getHeight());
-        mSurfaceHolder.unlockCanvasAndPost(canvas);
+    /**
+     * {@link LevelPack} of a level selected since the last frame, or null.
+     */
+    private LevelPack mPendingLevelPack;
+
+    /**
+     * Int holding the index of the level in {@link #mPendingLevelPack}.
+     */
+    private int mPendingLevel;
+
+    /**
+     * Constructs a new {@link RollerThread}. It waits for a surface to be attached with
+     * {@link #attachSurface(SurfaceHolder, int, int)} once started.
+     */
+    public RollerThread() {
+        super("RollerThread");
+        mThreadRunning = true;
+        mVelocity = new PointF();
     }
 
     /**
      * Invoked when this {@link RollerThread} should run its operations on a background thread. It
      * initiates a game loop that continually updates game logic in {@link #mRollerGame} and game
-     * UI in {@link #mSurfaceHolder}.
+     * UI in {@link #mSurfaceHolder}, until {@link #quit()} is called.
      */
     @Override
     public void run() {
         try {
-            while (mThreadRunning) {
-                Canvas canvas = mSurfaceHolder.lockCanvas();
-                mRollerGame.update(mVelocity);
-                mRollerGame.draw(canvas);
-                mSurfaceHolder.unlockCanvasAndPost(canvas);
+            while (true) {
+                SurfaceHolder holder;
+                int width;
+                int height;
+
+                // Wait for a surface and claim it for this frame.
+                synchronized (mLock) {
+                    while (mThreadRunning && mSurfaceHolder == null) {
+                        mLock.wait();
+                    }
+                    if (!mThreadRunning) break;
+                    holder = mSurfaceHolder;
+                    width = mSurfaceWidth;
+                    height = mSurfaceHeight;
+                    mDrawing = true;
+                }
+
+                boolean drawn;
+                try {
+                    drawn = drawFrame(holder, width, height);
+                } finally {
+                    synchronized (mLock) {
+                        mDrawing = false;
+                        mLock.notifyAll();
+                    }
+                }
+
+                // Surface isn't ready yet. Wait a bit, or until it is detached.
+                if (!drawn) {
+                    synchronized (mLock) {
+                        if (mThreadRunning && mSurfaceHolder == holder) {
+                            mLock.wait(RETRY_DELAY_MS);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Thread is being torn down.
+        } finally {
+            if (mRollerGame != null) {
+                mRollerGame.release();
+            }
+        }
+    }
+
+    /**
+     * Updates {@link #mRollerGame} and draws it to the passed {@link SurfaceHolder}. A new
+     * {@link RollerGame} with the same level and chaos mode is created whenever the surface size
+     * changes.
+     *
+     * @param holder {@link SurfaceHolder} to draw to.
+     * @param width  Width of the surface.
+     * @param height Height of the surface.
+     * @return False if the surface could not be locked.
+     */
+    private boolean drawFrame(SurfaceHolder holder, int width, int height) {
+
+        // Create a game with boundaries determined by the surface.
+        if (mRollerGame == null) {
+            mRollerGame = new RollerGame(width, height);
+        } else if (mRollerGame.getSurfaceWidth() != width
+                || mRollerGame.getSurfaceHeight() != height) {
+            mRollerGame = resizeGame(mRollerGame, width, height);
+        }
+
+        applyRequests();
+
+        Canvas canvas = holder.lockCanvas();
+        if (canvas == null) return false;
+        try {
+            mRollerGame.update(mVelocity);
+            mRollerGame.draw(canvas);
+        } finally {
+            holder.unlockCanvasAndPost(canvas);
+        }
+        return true;
+    }
+
+    /**
+     * Returns a new {@link RollerGame} for the passed surface size that keeps the level and chaos
+     * mode of the passed game, which is released. Positions don't carry over, so a new round
+     * starts.
+     *
+     * @param oldGame {@link RollerGame} being replaced.
+     * @param width   New width of the surface.
+     * @param height  New height of the surface.
+     * @return The new {@link RollerGame}.
+     */
+    private static RollerGame resizeGame(RollerGame oldGame, int width, int height) {
+        boolean chaosMode = oldGame.isChaosMode();
+        oldGame.release();
+
+        RollerGame newGame = new RollerGame(width, height);
+        if (oldGame.getLevelPack() != null) {
+            newGame.loadLevel(oldGame.getLevelPack(), oldGame.getLevel());
+        }
+        if (chaosMode) {
+            newGame.toggleChaosMode();
+        }
+        return newGame;
+    }
+
+    /**
+     * Passes requests and accelerometer values from the UI thread since the last frame on to
+     * {@link #mRollerGame}. A level whose record turns out to be corrupt is skipped and the
+     * current level stays in play.
+     */
+    private void applyRequests() {
+        LevelPack levelPack;
+        int level;
+        int chaosToggles;
+        boolean shake;
+        synchronized (mLock) {
+            mVelocity.set(mPendingVelocityX, mPendingVelocityY);
+            levelPack = mPendingLevelPack;
+            level = mPendingLevel;
+            chaosToggles = mPendingChaosToggles;
+            shake = mPendingShake;
+            mPendingLevelPack = null;
+            mPendingChaosToggles = 0;
+            mPendingShake = false;
+        }
+
+        if (levelPack != null) {
+            try {
+                mRollerGame.loadLevel(levelPack, level);
+            } catch (IllegalStateException ex) {
+                Log.w(TAG, "Skipping corrupt level " + level, ex);
+            }
+        }
+
+        // An even number of switches cancels out.
+        if (chaosToggles % 2 == 1) {
+            mRollerGame.toggleChaosMode();
+        }
+
+        if (shake) {
+            mRollerGame.newGame();
+        }
+    }
+
+    /**
+     * Starts rendering to the passed {@link SurfaceHolder}, replacing any surface already
+     * attached.
+     *
+     * @param holder {@link SurfaceHolder} to render to.
+     * @param width  Width of the surface.
+     * @param height Height of the surface.
+     */
+    public void attachSurface(SurfaceHolder holder, int width, int height) {
+        synchronized (mLock) {
+            mSurfaceHolder = holder;
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Stops rendering to the attached surface. Blocks until any frame in progress is finished, so
+     * the surface is safe to destroy once this returns.
+     */
+    public void detachSurface() {
+        synchronized (mLock) {
+            mSurfaceHolder = null;
+            mLock.notifyAll();
+            while (mDrawing) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
-        } catch (NullPointerException ex) {
-            // In case canvas is destroyed while thread is running.
-            ex.printStackTrace();
         }
     }
 
     /**
-     * Puts new accelerometer values in {@link #mVelocity}.
+     * Stops the background thread executing in this {@link RollerThread} and waits for it to exit.
+     */
+    public void quit() {
+        synchronized (mLock) {
+            mThreadRunning = false;
+            mLock.notifyAll();
+        }
+        try {
+            join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes new accelerometer values to {@link #mRollerGame} on the next frame.
      *
      * @param xForce Accelerometer x-value.
      * @param yForce Accelerometer y-value.
      */
     public void changeAcceleration(float xForce, float yForce) {
-        mVelocity.x = xForce;
-        mVelocity.y = yForce;
+        synchronized (mLock) {
+            mPendingVelocityX = xForce;
+            mPendingVelocityY = yForce;
+        }
     }
 
     /**
-     * Stops the background thread executing in this {@link RollerThread}.
+     * Notifies {@link #mRollerGame} of a device shake on the next frame.
      */
-    public void stopThread() {
-        mThreadRunning = false;
+    public void shake() {
+        synchronized (mLock) {
+            mPendingShake = true;
+        }
     }
 
     /**
-     * Notifies {@link #mRollerGame} of a device shake.
+     * Notifies {@link #mRollerGame} to switch chaos mode on or off on the next frame.
      */
-    public void shake() {
-        mRollerGame.newGame();
+    public void toggleChaosMode() {
+        synchronized (mLock) {
+            mPendingChaosToggles++;
+        }
+    }
+
+    /**
+     * Notifies {@link #mRollerGame} of a level selected from a {@link LevelPack} on the next frame.
+     *
+     * @param levelPack {@link LevelPack} to decode the level from.
+     * @param level     Index of the level in the passed {@link LevelPack}.
+     * @throws IllegalArgumentException If the passed level is not in the passed
+     *                                  {@link LevelPack}.
+     */
+    public void loadLevel(LevelPack levelPack, int level) {
+        if (level < 0 || level >= levelPack.getLevelCount()) {
+            throw new IllegalArgumentException("Level " + level + " of "
+                    + levelPack.getLevelCount());
+        }
+        synchronized (mLock) {
+            mPendingLevelPack = levelPack;
+            mPendingLevel = level;
+        }
     }
-}
\ No newline at end of file
+}
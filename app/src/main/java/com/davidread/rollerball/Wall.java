@@ -30,6 +30,11 @@ public class Wall {
      */
     private int mSurfaceWidth;
 
+    /**
+     * Int holding the height of the {@link RollerSurfaceView} displaying this {@link Wall}.
+     */
+    private int mSurfaceHeight;
+
     /**
      * {@link Paint} used to draw this {@link Wall} on a {@link Canvas}.
      */
@@ -47,6 +52,7 @@ public class Wall {
     public Wall(int x, int y, boolean initialDirectionRight, int surfaceWidth, int surfaceHeight) {
 
         mSurfaceWidth = surfaceWidth;
+        mSurfaceHeight = surfaceHeight;
 
         // Determine wall dimensions based on surface width and height.
         int width = surfaceWidth / 6;
@@ -76,6 +82,29 @@ public class Wall {
         return mRect;
     }
 
+    /**
+     * Replaces the position, size, and velocity of this {@link Wall}. Lets a {@link Wall} be reused
+     * for a level decoded from a {@link LevelPack} instead of allocating a new one.
+     *
+     * @param x                     The positional x-coordinate of this {@link Wall}.
+     * @param y                     The positional y-coordinate of this {@link Wall}.
+     * @param width                 The width of this {@link Wall}.
+     * @param height                The height of this {@link Wall}.
+     * @param speed                 The horizontal velocity of this {@link Wall}.
+     * @param initialDirectionRight Whether the initial direction of this {@link Wall} is right.
+     */
+    public void set(int x, int y, int width, int height, int speed, boolean initialDirectionRight) {
+
+        // Make sure wall fits completely on the surface.
+        width = Math.min(width, mSurfaceWidth);
+        height = Math.min(height, mSurfaceHeight);
+        x = Math.max(0, Math.min(x, mSurfaceWidth - width));
+        y = Math.max(0, Math.min(y, mSurfaceHeight - height));
+
+        mRect.set(x, y, x + width, y + height);
+        mMoveDistance = initialDirectionRight ? speed : -speed;
+    }
+
     /**
      * Moves the position of this {@link Wall} to the given x-coordinate.
      *
@@ -0,0 +1,115 @@
+package com.davidread.rollerball;
+
+import android.graphics.PointF;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Measures {@link BallSwarm} tick time on one thread against several threads at a few swarm
+ * sizes, and prints the median of each. Skipped unless run with
+ * {@code ./gradlew testDebugUnitTest --tests '*BallSwarmBenchmark' -Drollerball.benchmark=true}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BallSwarmBenchmark {
+
+    /**
+     * Int constant representing the surface width used by the benchmark.
+     */
+    private static final int SURFACE_WIDTH = 1080;
+
+    /**
+     * Int constant representing the surface height used by the benchmark.
+     */
+    private static final int SURFACE_HEIGHT = 2200;
+
+    /**
+     * Int constant representing the number of ticks run before measuring.
+     */
+    private static final int WARMUP_TICKS = 2000;
+
+    /**
+     * Int constant representing the number of samples measured per configuration.
+     */
+    private static final int SAMPLES = 30;
+
+    /**
+     * Int constant representing the number of ticks per sample.
+     */
+    private static final int TICKS_PER_SAMPLE = 100;
+
+    @Before
+    public void requireOptIn() {
+        assumeNotNull(System.getProperty("rollerball.benchmark"));
+    }
+
+    @Test
+    public void tickTime_byBallsAndThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("BallSwarmBenchmark: " + cores + " cores");
+
+        for (int balls : new int[]{500, 2000, 5000}) {
+            for (int parties : new int[]{1, 2, 4, 8}) {
+                if (parties > BallSwarm.MAX_WORKERS) continue;
+                System.out.printf("%5d balls, %d threads: %8.1f us/tick%n", balls, parties,
+                        medianTickMicros(balls, parties));
+            }
+        }
+    }
+
+    /**
+     * Returns the median tick time of a swarm with the passed size and thread count. Balls start
+     * packed at the top of the surface and are tilted back and forth so they keep colliding.
+     *
+     * @param balls   The number of balls.
+     * @param parties The number of threads that work on a tick.
+     * @return The median tick time in microseconds.
+     */
+    private static double medianTickMicros(int balls, int parties) {
+        int radius = Math.max(BallSwarm.MIN_RADIUS,
+                (int) Math.sqrt((double) SURFACE_WIDTH * SURFACE_HEIGHT / 4 / balls) / 2 - 1);
+        BallSwarm swarm = new BallSwarm(balls, radius, SURFACE_WIDTH, SURFACE_HEIGHT, parties);
+        ArrayList<Wall> walls = new ArrayList<>();
+        PointF tilt = new PointF();
+        long tick = 0;
+
+        try {
+            for (int c = 0; c < WARMUP_TICKS; c++) {
+                swarm.update(tilt(tick++, tilt), walls, 0);
+            }
+
+            long[] samples = new long[SAMPLES];
+            for (int s = 0; s < SAMPLES; s++) {
+                long start = System.nanoTime();
+                for (int c = 0; c < TICKS_PER_SAMPLE; c++) {
+                    swarm.update(tilt(tick++, tilt), walls, 0);
+                }
+                samples[s] = System.nanoTime() - start;
+            }
+
+            Arrays.sort(samples);
+            return samples[SAMPLES / 2] / 1000.0 / TICKS_PER_SAMPLE;
+        } finally {
+            swarm.release();
+        }
+    }
+
+    /**
+     * Sets the passed {@link PointF} to the tilt at the passed tick.
+     *
+     * @param tick Tick number.
+     * @param tilt {@link PointF} to set.
+     * @return The passed {@link PointF}.
+     */
+    private static PointF tilt(long tick, PointF tilt) {
+        tilt.set((float) (8 * Math.sin(tick / 90.0)), (float) (8 * Math.cos(tick / 150.0)));
+        return tilt;
+    }
+}
@@ -0,0 +1,293 @@
+package com.davidread.rollerball;
+
+import android.graphics.PointF;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests for the spatial hash, contact resolution, knock-out and win rules of
+ * {@link BallSwarm}. Balls have a radius of 20, so spatial hash cells are 40 wide.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BallSwarmTest {
+
+    /**
+     * Int constant representing the surface width used by these tests.
+     */
+    private static final int SURFACE_WIDTH = 1000;
+
+    /**
+     * Int constant representing the surface height used by these tests.
+     */
+    private static final int SURFACE_HEIGHT = 2000;
+
+    /**
+     * Int constant representing the radius of every ball in these tests.
+     */
+    private static final int RADIUS = 20;
+
+    /**
+     * Float constant representing the allowed error in ball positions.
+     */
+    private static final float DELTA = 1e-3f;
+
+    /**
+     * {@link PointF} of zero tilt, so only collisions move balls.
+     */
+    private final PointF mNoTilt = new PointF();
+
+    /**
+     * {@link ArrayList} of {@link Wall}s passed to each tick.
+     */
+    private final ArrayList<Wall> mWalls = new ArrayList<>();
+
+    /**
+     * {@link ArrayList} of {@link BallSwarm}s created by a test, released after it.
+     */
+    private final ArrayList<BallSwarm> mSwarms = new ArrayList<>();
+
+    @After
+    public void releaseSwarms() {
+        for (BallSwarm swarm : mSwarms) {
+            swarm.release();
+        }
+    }
+
+    @Test
+    public void overlappingPair_isPushedApartByHalfTheOverlapEach() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 500, 500);
+        swarm.setCenter(1, 530, 500);
+
+        swarm.update(mNoTilt, mWalls, 0);
+
+        assertCenter(swarm, 0, 495, 500);
+        assertCenter(swarm, 1, 535, 500);
+    }
+
+    @Test
+    public void separatedPair_isNotMoved() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 500, 500);
+        swarm.setCenter(1, 541, 500);
+
+        swarm.update(mNoTilt, mWalls, 0);
+
+        assertCenter(swarm, 0, 500, 500);
+        assertCenter(swarm, 1, 541, 500);
+    }
+
+    @Test
+    public void coincidentBalls_areSplitByIndex() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 500, 500);
+        swarm.setCenter(1, 500, 500);
+
+        swarm.update(mNoTilt, mWalls, 0);
+
+        assertCenter(swarm, 0, 500 - RADIUS, 500);
+        assertCenter(swarm, 1, 500 + RADIUS, 500);
+    }
+
+    @Test
+    public void pairAcrossColumnEdge_isFound() {
+        BallSwarm swarm = swarm(2, 1);
+
+        // Cell columns 1 and 2 meet at x = 80.
+        swarm.setCenter(0, 70, 500);
+        swarm.setCenter(1, 100, 500);
+
+        swarm.update(mNoTilt, mWalls, 0);
+
+        assertCenter(swarm, 0, 65, 500);
+        assertCenter(swarm, 1, 105, 500);
+    }
+
+    @Test
+    public void pairAcrossCellCorner_isFound() {
+        BallSwarm swarm = swarm(2, 1);
+
+        // Diagonal neighbours: cell (1, 1) and cell (2, 2).
+        swarm.setCenter(0, 75, 75);
+        swarm.setCenter(1, 90, 90);
+
+        swarm.update(mNoTilt, mWalls, 0);
+
+        float distance = (float) Math.hypot(15, 15);
+        float push = (2 * RADIUS - distance) / 2 / (float) Math.sqrt(2);
+        assertCenter(swarm, 0, 75 - push, 75 - push);
+        assertCenter(swarm, 1, 90 + push, 90 + push);
+    }
+
+    @Test
+    public void ballTouchingWall_isKnockedOut() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 500, 985);
+        swarm.setCenter(1, 500, 300);
+        mWalls.add(wall(400, 1000, 200, 50));
+
+        swarm.update(mNoTilt, mWalls, 1);
+
+        assertFalse(swarm.isAlive(0));
+        assertTrue(swarm.isAlive(1));
+        assertEquals(1, swarm.getAliveCount());
+    }
+
+    @Test
+    public void knockedOutBall_isIgnoredByOthers() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 500, 985);
+        mWalls.add(wall(400, 1000, 200, 50));
+        swarm.update(mNoTilt, mWalls, 1);
+
+        // Live ball placed on top of the knocked out one is not pushed.
+        mWalls.clear();
+        swarm.setCenter(1, 510, 985);
+        swarm.update(mNoTilt, mWalls, 0);
+
+        assertCenter(swarm, 1, 510, 985);
+    }
+
+    @Test
+    public void ballAtBottom_wins() {
+        BallSwarm swarm = swarm(2, 1);
+        swarm.setCenter(0, 100, 100);
+        swarm.setCenter(1, 900, 100);
+        swarm.update(mNoTilt, mWalls, 0);
+        assertFalse(swarm.hasWon());
+
+        // Tilt pushes both balls down; clamping stops them exactly at the bottom.
+        swarm.update(new PointF(0, SURFACE_HEIGHT), mWalls, 0);
+        assertTrue(swarm.hasWon());
+        assertCenter(swarm, 0, 100, SURFACE_HEIGHT - RADIUS);
+
+        swarm.reset();
+        assertFalse(swarm.hasWon());
+    }
+
+    @Test
+    public void allBallsKnockedOut_leavesNoneAlive() {
+        BallSwarm swarm = swarm(3, 1);
+        mWalls.add(wall(0, 0, SURFACE_WIDTH, SURFACE_HEIGHT));
+
+        swarm.update(mNoTilt, mWalls, 1);
+
+        assertEquals(0, swarm.getAliveCount());
+        assertFalse(swarm.hasWon());
+    }
+
+    @Test
+    public void workerCount_doesNotChangeResult() {
+        BallSwarm single = swarm(3000, 1);
+        BallSwarm parallel = swarm(3000, 4);
+        assertEquals(4, parallel.getParties());
+
+        // Scatter balls the same way in both swarms so many overlap.
+        Random random = new Random(7);
+        for (int c = 0; c < 3000; c++) {
+            float x = RADIUS + random.nextInt(SURFACE_WIDTH - 2 * RADIUS);
+            float y = RADIUS + random.nextInt(SURFACE_HEIGHT - 2 * RADIUS);
+            single.setCenter(c, x, y);
+            parallel.setCenter(c, x, y);
+        }
+        mWalls.add(wall(300, 1000, 200, 50));
+
+        PointF tilt = new PointF(3, 2);
+        for (int c = 0; c < 50; c++) {
+            single.update(tilt, mWalls, 1);
+            parallel.update(tilt, mWalls, 1);
+        }
+
+        assertEquals(single.getAliveCount(), parallel.getAliveCount());
+        for (int c = 0; c < 3000; c++) {
+            assertEquals(single.getX(c), parallel.getX(c), 0);
+            assertEquals(single.getY(c), parallel.getY(c), 0);
+            assertEquals(single.isAlive(c), parallel.isAlive(c));
+        }
+    }
+
+    @Test
+    public void workerCount_followsCoreCount() {
+        BallSwarm swarm = new BallSwarm(500, SURFACE_WIDTH, SURFACE_HEIGHT, SURFACE_HEIGHT / 4);
+        mSwarms.add(swarm);
+        assertEquals(Math.min(BallSwarm.MAX_WORKERS, Runtime.getRuntime().availableProcessors()),
+                swarm.getParties());
+    }
+
+    @Test
+    public void workerCount_isLimitedByBallCount() {
+        BallSwarm swarm = new BallSwarm(1, SURFACE_WIDTH, SURFACE_HEIGHT, SURFACE_HEIGHT / 4);
+        mSwarms.add(swarm);
+        assertEquals(1, swarm.getParties());
+    }
+
+    @Test
+    public void moreWorkersThanCells_doesNotChangeResult() {
+
+        // One ball per cell on a tiny surface, so some workers get no cells.
+        BallSwarm single = new BallSwarm(4, RADIUS, 2 * RADIUS, 2 * RADIUS, 1);
+        BallSwarm parallel = new BallSwarm(4, RADIUS, 2 * RADIUS, 2 * RADIUS, 8);
+        mSwarms.add(single);
+        mSwarms.add(parallel);
+
+        for (int c = 0; c < 10; c++) {
+            single.update(mNoTilt, mWalls, 0);
+            parallel.update(mNoTilt, mWalls, 0);
+        }
+
+        for (int c = 0; c < 4; c++) {
+            assertEquals(single.getX(c), parallel.getX(c), 0);
+            assertEquals(single.getY(c), parallel.getY(c), 0);
+        }
+    }
+
+    /**
+     * Returns a new {@link BallSwarm} of balls with radius {@link #RADIUS}, released after the
+     * test.
+     *
+     * @param count   The number of balls.
+     * @param parties The number of threads that work on a tick.
+     * @return The new {@link BallSwarm}.
+     */
+    private BallSwarm swarm(int count, int parties) {
+        BallSwarm swarm = new BallSwarm(count, RADIUS, SURFACE_WIDTH, SURFACE_HEIGHT, parties);
+        mSwarms.add(swarm);
+        return swarm;
+    }
+
+    /**
+     * Returns a still {@link Wall} at the passed position and size.
+     *
+     * @param x      x-coordinate of the wall.
+     * @param y      y-coordinate of the wall.
+     * @param width  Width of the wall.
+     * @param height Height of the wall.
+     * @return The new {@link Wall}.
+     */
+    private static Wall wall(int x, int y, int width, int height) {
+        Wall wall = new Wall(0, 0, false, SURFACE_WIDTH, SURFACE_HEIGHT);
+        wall.set(x, y, width, height, 0, false);
+        return wall;
+    }
+
+    /**
+     * Asserts the center of the passed ball.
+     *
+     * @param swarm {@link BallSwarm} holding the ball.
+     * @param ball  Index of the ball.
+     * @param x     Expected x-coordinate.
+     * @param y     Expected y-coordinate.
+     */
+    private static void assertCenter(BallSwarm swarm, int ball, float x, float y) {
+        assertEquals(x, swarm.getX(ball), DELTA);
+        assertEquals(y, swarm.getY(ball), DELTA);
+    }
+}
@@ -0,0 +1,120 @@
+package com.davidread.rollerball;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link FakeSurfaceHolder} stands in for a real surface. Each lock hands out a fresh
+ * {@link Canvas} and counts the frames posted back.
+ */
+class FakeSurfaceHolder implements SurfaceHolder {
+
+    /**
+     * {@link AtomicInteger} holding the number of frames posted.
+     */
+    private final AtomicInteger mFrames = new AtomicInteger();
+
+    /**
+     * Whether a {@link Canvas} is locked and not yet posted.
+     */
+    private volatile boolean mLocked;
+
+    /**
+     * Ints holding the size of the surface.
+     */
+    private final int mWidth, mHeight;
+
+    /**
+     * Constructs a new {@link FakeSurfaceHolder}.
+     *
+     * @param width  Width of the surface.
+     * @param height Height of the surface.
+     */
+    FakeSurfaceHolder(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Returns the number of frames posted.
+     *
+     * @return The number of frames posted.
+     */
+    int getFrames() {
+        return mFrames.get();
+    }
+
+    /**
+     * Returns true if a {@link Canvas} is locked and not yet posted.
+     *
+     * @return True if a {@link Canvas} is locked and not yet posted.
+     */
+    boolean isLocked() {
+        return mLocked;
+    }
+
+    @Override
+    public Canvas lockCanvas() {
+        mLocked = true;
+        return new Canvas();
+    }
+
+    @Override
+    public Canvas lockCanvas(Rect dirty) {
+        return lockCanvas();
+    }
+
+    @Override
+    public void unlockCanvasAndPost(Canvas canvas) {
+        mLocked = false;
+        mFrames.incrementAndGet();
+    }
+
+    @Override
+    public void addCallback(Callback callback) {
+    }
+
+    @Override
+    public void removeCallback(Callback callback) {
+    }
+
+    @Override
+    public boolean isCreating() {
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setType(int type) {
+    }
+
+    @Override
+    public void setFixedSize(int width, int height) {
+    }
+
+    @Override
+    public void setSizeFromLayout() {
+    }
+
+    @Override
+    public void setFormat(int format) {
+    }
+
+    @Override
+    public void setKeepScreenOn(boolean screenOn) {
+    }
+
+    @Override
+    public Rect getSurfaceFrame() {
+        return new Rect(0, 0, mWidth, mHeight);
+    }
+
+    @Override
+    public Surface getSurface() {
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+package com.davidread.rollerball;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link LeakChecks} holds the thread and heap checks shared by the lifecycle and soak tests.
+ */
+final class LeakChecks {
+
+    /**
+     * Long constant representing how many bytes retained heap may grow over a test.
+     */
+    static final long MAX_HEAP_GROWTH = 8L * 1024 * 1024;
+
+    /**
+     * Long constant representing how many bytes two heap readings may differ by for the heap to
+     * count as settled after garbage collection.
+     */
+    private static final long HEAP_SETTLE_BYTES = 256 * 1024;
+
+    /**
+     * Int constant representing the most garbage collections run while waiting for the heap to
+     * settle.
+     */
+    private static final int HEAP_SETTLE_ATTEMPTS = 20;
+
+    private LeakChecks() {
+    }
+
+    /**
+     * Returns the number of live threads whose name starts with the passed prefix.
+     *
+     * @param prefix Thread name prefix.
+     * @return The number of live threads whose name starts with the passed prefix.
+     */
+    static int countThreads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of worker threads a chaos mode {@link BallSwarm} starts on this machine,
+     * besides the game loop thread.
+     *
+     * @return The number of worker threads in a chaos mode {@link BallSwarm}.
+     */
+    static int chaosWorkers() {
+        return Math.min(BallSwarm.MAX_WORKERS, Runtime.getRuntime().availableProcessors()) - 1;
+    }
+
+    /**
+     * Returns the number of heap bytes in use once garbage collection stops freeing memory. Since
+     * {@link System#gc()} is only a request, collections are repeated until two readings in a row
+     * are within {@link #HEAP_SETTLE_BYTES}.
+     *
+     * @return The number of heap bytes in use.
+     */
+    static long settledHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long previous = Long.MAX_VALUE;
+        for (int c = 0; c < HEAP_SETTLE_ATTEMPTS; c++) {
+            System.gc();
+            System.runFinalization();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            if (Math.abs(previous - used) <= HEAP_SETTLE_BYTES) {
+                return Math.min(previous, used);
+            }
+            previous = used;
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Asserts that retained heap grew by no more than {@link #MAX_HEAP_GROWTH}.
+     *
+     * @param baseline Bytes in use at the start of the measurement.
+     * @param current  Bytes in use at the end of the measurement.
+     */
+    static void assertHeapFlat(long baseline, long current) {
+        assertTrue("Retained heap grew from " + baseline + " to " + current + " bytes",
+                current - baseline <= MAX_HEAP_GROWTH);
+    }
+}
@@ -0,0 +1,323 @@
+package com.davidread.rollerball;
+
+import android.graphics.Rect;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests that write level packs with {@link LevelPackWriter} and read them back with
+ * {@link LevelPack}, including packs with a broken header, index, or level record, and packs
+ * stored inside a larger file like an APK asset.
+ * <p>
+ * The levels shipped in {@link #SHIPPED_PACK} are authored in {@link #writeShippedLevels(File)}.
+ * After changing them, rewrite the asset with
+ * {@code ./gradlew testDebugUnitTest --tests '*LevelPackTest' -Drollerball.levels.write=true}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LevelPackTest {
+
+    /**
+     * Int constant representing the surface width used by these tests.
+     */
+    private static final int SURFACE_WIDTH = 1000;
+
+    /**
+     * Int constant representing the surface height used by these tests.
+     */
+    private static final int SURFACE_HEIGHT = 2000;
+
+    /**
+     * {@link File} constant representing the level pack shipped in the app's assets, relative to
+     * the module directory tests run in.
+     */
+    private static final File SHIPPED_PACK = new File("src/main/assets/levels.rlp");
+
+    /**
+     * {@link TemporaryFolder} holding the level pack files written by each test.
+     */
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip_decodesBallAndWalls() throws IOException {
+        File file = mFolder.newFile();
+        new LevelPackWriter()
+                .addLevel(500, 50)
+                .addWall(100, 250, 166, 50, 10, true)
+                .addWall(900, 500, 200, 50, 15, false)
+                .addLevel(250, 100)
+                .writeTo(file);
+
+        LevelPack pack = LevelPack.open(file);
+        assertEquals(2, pack.getLevelCount());
+        assertEquals(2, pack.getWallCount(0));
+        assertEquals(0, pack.getWallCount(1));
+
+        Ball ball = new Ball(SURFACE_WIDTH, SURFACE_HEIGHT);
+        pack.decodeBall(0, ball, SURFACE_WIDTH, SURFACE_HEIGHT);
+        assertEquals(100 + ball.RADIUS, ball.getBottom());
+
+        Wall wall = new Wall(0, 0, false, SURFACE_WIDTH, SURFACE_HEIGHT);
+        pack.decodeWall(0, 0, wall, SURFACE_WIDTH, SURFACE_HEIGHT);
+        assertRect(100, 500, 166, 100, wall.getRect());
+
+        // Moving right by its speed.
+        wall.move();
+        assertEquals(110, wall.getRect().left);
+
+        // Second wall is pushed back on screen and moves left.
+        pack.decodeWall(0, 1, wall, SURFACE_WIDTH, SURFACE_HEIGHT);
+        assertRect(800, 1000, 200, 100, wall.getRect());
+        wall.move();
+        assertEquals(785, wall.getRect().left);
+    }
+
+    @Test
+    public void roundTrip_keepsWallsOnSurface() throws IOException {
+        File file = mFolder.newFile();
+        new LevelPackWriter()
+                .addLevel(0, 0)
+                .addWall(0, 990, 100, 50, 10, true)
+                .writeTo(file);
+
+        Wall wall = new Wall(0, 0, false, SURFACE_WIDTH, SURFACE_HEIGHT);
+        LevelPack.open(file).decodeWall(0, 0, wall, SURFACE_WIDTH, SURFACE_HEIGHT);
+        assertRect(0, SURFACE_HEIGHT - 100, 100, 100, wall.getRect());
+    }
+
+    @Test
+    public void loadLevel_reusesWallPool() throws IOException {
+        File file = mFolder.newFile();
+        LevelPackWriter writer = new LevelPackWriter();
+        for (int c = 0; c < 1000; c++) {
+            writer.addLevel(500, 50);
+            for (int w = 0; w < c % 6; w++) {
+                writer.addWall(100 * w, 150 * (w + 1), 166, 50, 10, w % 2 == 0);
+            }
+        }
+        writer.writeTo(file);
+
+        LevelPack pack = LevelPack.open(file);
+        RollerGame game = new RollerGame(SURFACE_WIDTH, SURFACE_HEIGHT);
+        for (int c = 0; c < pack.getLevelCount(); c++) {
+            game.loadLevel(pack, c);
+        }
+        assertSame(pack, game.getLevelPack());
+        assertEquals(999, game.getLevel());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsBadMagic() throws IOException {
+        File file = writeOneLevel();
+        patchInt(file, 0, 0x12345678);
+        LevelPack.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsBadVersion() throws IOException {
+        File file = writeOneLevel();
+        patchInt(file, 4, LevelPack.VERSION + 1);
+        LevelPack.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsTruncatedIndex() throws IOException {
+        File file = writeOneLevel();
+        patchInt(file, 8, 1000);
+        LevelPack.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsTruncatedHeader() throws IOException {
+        File file = writeOneLevel();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(LevelPack.HEADER_SIZE - 1);
+        }
+        LevelPack.open(file);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void decode_rejectsOffsetOutsideFile() throws IOException {
+        File file = writeOneLevel();
+        patchInt(file, LevelPack.HEADER_SIZE, (int) file.length());
+        LevelPack.open(file).getWallCount(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void decode_rejectsWallsOutsideFile() throws IOException {
+        File file = writeOneLevel();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(file.length() - 1);
+        }
+        LevelPack.open(file).getWallCount(0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void decode_rejectsLevelOutOfRange() throws IOException {
+        LevelPack.open(writeOneLevel()).getWallCount(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void decode_rejectsWallOutOfRange() throws IOException {
+        Wall wall = new Wall(0, 0, false, SURFACE_WIDTH, SURFACE_HEIGHT);
+        LevelPack.open(writeOneLevel()).decodeWall(0, 1, wall, SURFACE_WIDTH, SURFACE_HEIGHT);
+    }
+
+    @Test
+    public void open_mapsPackInsideLargerFile() throws IOException {
+        byte[] pack = Files.readAllBytes(writeOneLevel().toPath());
+
+        // Pack surrounded by other data, like an uncompressed asset inside an APK.
+        File file = mFolder.newFile();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.write(new byte[37]);
+            out.write(pack);
+            out.write(new byte[19]);
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            LevelPack levelPack = LevelPack.open(channel, 37, pack.length);
+            assertEquals(1, levelPack.getLevelCount());
+            assertEquals(1, levelPack.getWallCount(0));
+
+            Wall wall = new Wall(0, 0, false, SURFACE_WIDTH, SURFACE_HEIGHT);
+            levelPack.decodeWall(0, 0, wall, SURFACE_WIDTH, SURFACE_HEIGHT);
+            assertRect(100, 500, 166, 100, wall.getRect());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsRangeOutsideFile() throws IOException {
+        File file = writeOneLevel();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            LevelPack.open(channel, 1, file.length());
+        }
+    }
+
+    @Test
+    public void shippedPack_matchesShippedLevels() throws IOException {
+        if (System.getProperty("rollerball.levels.write") != null) {
+            writeShippedLevels(SHIPPED_PACK);
+        }
+
+        File file = mFolder.newFile();
+        writeShippedLevels(file);
+        assertArrayEquals("Shipped levels changed; rewrite the asset",
+                Files.readAllBytes(file.toPath()), Files.readAllBytes(SHIPPED_PACK.toPath()));
+
+        // Every level decodes onto the surface.
+        LevelPack pack = LevelPack.open(SHIPPED_PACK);
+        RollerGame game = new RollerGame(SURFACE_WIDTH, SURFACE_HEIGHT);
+        for (int c = 0; c < pack.getLevelCount(); c++) {
+            game.loadLevel(pack, c);
+        }
+        assertEquals(pack.getLevelCount() - 1, game.getLevel());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writer_rejectsWallBeforeLevel() {
+        new LevelPackWriter().addWall(0, 0, 100, 50, 10, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writer_rejectsValueOutOfRange() {
+        new LevelPackWriter().addLevel(-1, 0);
+    }
+
+    /**
+     * Writes a pack holding one level with one wall.
+     *
+     * @return The written {@link File}.
+     * @throws IOException If the file cannot be written.
+     */
+    private File writeOneLevel() throws IOException {
+        File file = mFolder.newFile();
+        new LevelPackWriter()
+                .addLevel(500, 50)
+                .addWall(100, 250, 166, 50, 10, true)
+                .writeTo(file);
+        return file;
+    }
+
+    /**
+     * Writes the levels shipped in the app's assets, played in order by {@link MainActivity}.
+     *
+     * @param file {@link File} to write the level pack to.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void writeShippedLevels(File file) throws IOException {
+        new LevelPackWriter()
+                // Three walls like a random game.
+                .addLevel(500, 30)
+                .addWall(100, 250, 166, 50, 10, true)
+                .addWall(700, 500, 166, 50, 10, false)
+                .addWall(300, 750, 166, 50, 10, true)
+                // Half-width walls sweeping in turn.
+                .addLevel(100, 30)
+                .addWall(0, 200, 500, 50, 8, true)
+                .addWall(500, 400, 500, 50, 8, false)
+                .addWall(0, 600, 500, 50, 8, true)
+                .addWall(500, 800, 500, 50, 8, false)
+                // A still gate, then fast walls below it.
+                .addLevel(500, 30)
+                .addWall(0, 300, 400, 50, 0, false)
+                .addWall(600, 300, 400, 50, 0, false)
+                .addWall(400, 550, 200, 50, 14, true)
+                .addWall(200, 800, 166, 50, 18, false)
+                .addWall(650, 800, 166, 50, 18, true)
+                // Many small, fast walls.
+                .addLevel(900, 30)
+                .addWall(100, 150, 120, 40, 20, true)
+                .addWall(800, 300, 120, 40, 20, false)
+                .addWall(100, 450, 120, 40, 20, true)
+                .addWall(800, 600, 120, 40, 20, false)
+                .addWall(100, 750, 120, 40, 20, true)
+                .addWall(800, 900, 120, 40, 20, false)
+                .writeTo(file);
+    }
+
+    /**
+     * Overwrites a big-endian int at the passed offset of the passed file.
+     *
+     * @param file   {@link File} to patch.
+     * @param offset Offset of the int within the file.
+     * @param value  New value of the int.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void patchInt(File file, int offset, int value) throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(offset);
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Asserts the position and size of the passed {@link Rect}.
+     *
+     * @param left   Expected left edge.
+     * @param top    Expected top edge.
+     * @param width  Expected width.
+     * @param height Expected height.
+     * @param rect   {@link Rect} to check.
+     */
+    private static void assertRect(int left, int top, int width, int height, Rect rect) {
+        assertEquals(left, rect.left);
+        assertEquals(top, rect.top);
+        assertEquals(width, rect.width());
+        assertEquals(height, rect.height());
+    }
+}
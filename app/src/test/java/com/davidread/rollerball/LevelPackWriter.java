@@ -0,0 +1,166 @@
+package com.davidread.rollerball;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * {@link LevelPackWriter} builds a level pack file in the format read by {@link LevelPack}. Levels
+ * are added in order with {@link #addLevel(int, int)}, each followed by its walls from
+ * {@link #addWall(int, int, int, int, int, boolean)}, then the pack is saved with
+ * {@link #writeTo(File)}. Positions and sizes are in thousandths of the surface width or height.
+ * <p>
+ * This is authoring and test tooling only; the app reads packs with {@link LevelPack}. The levels
+ * shipped in the app's assets are written by {@link LevelPackTest}.
+ */
+public class LevelPackWriter {
+
+    /**
+     * Int constant representing the largest value a u16 field can hold.
+     */
+    private static final int MAX_U16 = 0xffff;
+
+    /**
+     * Int constant representing the most walls a level can hold.
+     */
+    public static final int MAX_WALLS = 0xff;
+
+    /**
+     * {@link ByteArrayOutputStream} holding the level records added so far.
+     */
+    private final ByteArrayOutputStream mRecords;
+
+    /**
+     * {@link DataOutputStream} writing big-endian values to {@link #mRecords}.
+     */
+    private final DataOutputStream mOut;
+
+    /**
+     * {@link ArrayList} holding the offset of each level record within {@link #mRecords}.
+     */
+    private final ArrayList<Integer> mLevelOffsets;
+
+    /**
+     * {@link ArrayList} holding the number of walls in each level.
+     */
+    private final ArrayList<Integer> mWallCounts;
+
+    /**
+     * Constructs a new, empty {@link LevelPackWriter}.
+     */
+    public LevelPackWriter() {
+        mRecords = new ByteArrayOutputStream();
+        mOut = new DataOutputStream(mRecords);
+        mLevelOffsets = new ArrayList<>();
+        mWallCounts = new ArrayList<>();
+    }
+
+    /**
+     * Starts a new level with the passed ball start position.
+     *
+     * @param ballX x-coordinate of the ball start, in thousandths of the surface width.
+     * @param ballY y-coordinate of the ball start, in thousandths of the surface height.
+     * @return This {@link LevelPackWriter}.
+     */
+    public LevelPackWriter addLevel(int ballX, int ballY) {
+        mLevelOffsets.add(mOut.size());
+        mWallCounts.add(0);
+        writeU16(ballX);
+        writeU16(ballY);
+        writeByte(0);
+        return this;
+    }
+
+    /**
+     * Adds a wall to the level started by the last call to {@link #addLevel(int, int)}.
+     *
+     * @param x         x-coordinate of the wall, in thousandths of the surface width.
+     * @param y         y-coordinate of the wall, in thousandths of the surface height.
+     * @param width     Width of the wall, in thousandths of the surface width.
+     * @param height    Height of the wall, in thousandths of the surface height.
+     * @param speed     Horizontal velocity of the wall in pixels per tick.
+     * @param moveRight Whether the wall initially moves right.
+     * @return This {@link LevelPackWriter}.
+     */
+    public LevelPackWriter addWall(int x, int y, int width, int height, int speed,
+                                   boolean moveRight) {
+        int level = mLevelOffsets.size() - 1;
+        if (level < 0) {
+            throw new IllegalStateException("addLevel must be called before addWall");
+        }
+        int wallCount = mWallCounts.get(level);
+        if (wallCount == MAX_WALLS) {
+            throw new IllegalStateException("A level holds at most " + MAX_WALLS + " walls");
+        }
+        mWallCounts.set(level, wallCount + 1);
+
+        writeU16(x);
+        writeU16(y);
+        writeU16(width);
+        writeU16(height);
+        writeU16(speed);
+        writeByte(moveRight ? LevelPack.FLAG_RIGHT : 0);
+        return this;
+    }
+
+    /**
+     * Writes the header, offset index, and levels added so far to the passed file.
+     *
+     * @param file {@link File} to write the level pack to.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeTo(File file) throws IOException {
+        int levelCount = mLevelOffsets.size();
+        int indexEnd = LevelPack.HEADER_SIZE + 4 * levelCount;
+
+        // Fill in each level's wall count now that all its walls are known.
+        byte[] records = mRecords.toByteArray();
+        for (int c = 0; c < levelCount; c++) {
+            records[mLevelOffsets.get(c) + 4] = (byte) (int) mWallCounts.get(c);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(LevelPack.MAGIC);
+            out.writeInt(LevelPack.VERSION);
+            out.writeInt(levelCount);
+            for (int c = 0; c < levelCount; c++) {
+                out.writeInt(indexEnd + mLevelOffsets.get(c));
+            }
+            out.write(records);
+        }
+    }
+
+    /**
+     * Writes the passed value as an unsigned short.
+     *
+     * @param value Value from 0 to 65535.
+     */
+    private void writeU16(int value) {
+        if (value < 0 || value > MAX_U16) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        try {
+            mOut.writeShort(value);
+        } catch (IOException ex) {
+            // ByteArrayOutputStream never throws.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Writes the passed value as a single byte.
+     *
+     * @param value Value from 0 to 255.
+     */
+    private void writeByte(int value) {
+        try {
+            mOut.writeByte(value);
+        } catch (IOException ex) {
+            // ByteArrayOutputStream never throws.
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.davidread.rollerball;
+
+import android.graphics.PixelFormat;
+import android.os.Looper;
+import android.view.ViewGroup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import static com.davidread.rollerball.LeakChecks.assertHeapFlat;
+import static com.davidread.rollerball.LeakChecks.chaosWorkers;
+import static com.davidread.rollerball.LeakChecks.countThreads;
+import static com.davidread.rollerball.LeakChecks.settledHeap;
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Local tests that repeatedly create and destroy surfaces and activities while feeding a
+ * synthetic sensor stream, and check that game and worker threads don't pile up and retained heap
+ * stays flat.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RollerSurfaceViewTest {
+
+    /**
+     * Int constant representing the surface width used by these tests.
+     */
+    private static final int SURFACE_WIDTH = 1080;
+
+    /**
+     * Int constant representing the surface height used by these tests.
+     */
+    private static final int SURFACE_HEIGHT = 2200;
+
+    /**
+     * Long constant representing how many milliseconds to wait for the game thread to draw.
+     */
+    private static final long FRAME_TIMEOUT_MS = 5000;
+
+    /**
+     * Creates and destroys surfaces on one activity hundreds of times, detaching the view from
+     * its window now and then, and checks that at most one game thread is ever alive.
+     */
+    @Test
+    public void surfaceLifecycles_keepOneGameThread() {
+        ActivityController<MainActivity> controller =
+                Robolectric.buildActivity(MainActivity.class).setup();
+        shadowOf(Looper.getMainLooper()).idle();
+        MainActivity activity = controller.get();
+        RollerSurfaceView view = activity.findViewById(R.id.rollerSurface);
+        assertTrue(view.isAttachedToWindow());
+
+        FakeSurfaceHolder holder = new FakeSurfaceHolder(SURFACE_WIDTH, SURFACE_HEIGHT);
+        SensorStream sensors = new SensorStream(1);
+        long baselineHeap = 0;
+
+        for (int c = 0; c < 500; c++) {
+            playOnSurface(activity, view, holder, sensors);
+            assertFalse("Surface still locked after it was destroyed", holder.isLocked());
+            assertTrue(countThreads("RollerThread") <= 1);
+
+            // Detach and reattach the view, as the window does when the activity is hidden.
+            if (c % 25 == 24) {
+                ViewGroup parent = (ViewGroup) view.getParent();
+                parent.removeView(view);
+                assertEquals(0, countThreads("RollerThread"));
+                parent.addView(view);
+                assertEquals(1, countThreads("RollerThread"));
+            }
+
+            // Background and foreground the activity.
+            if (c % 50 == 49) {
+                controller.pause().stop().restart().start().resume();
+            }
+
+            if (c == 50) {
+                baselineHeap = settledHeap();
+            }
+        }
+
+        assertHeapFlat(baselineHeap, settledHeap());
+        destroy(controller);
+        assertEquals(0, countThreads("RollerThread"));
+        assertEquals(0, countThreads("RollerWorker-"));
+    }
+
+    /**
+     * Recreates the activity many times, as rotation and process restarts do, with chaos mode
+     * switched on half the time. Checks that chaos mode runs exactly its worker threads and that
+     * no game or worker threads outlive the activity.
+     */
+    @Test
+    public void activityRecreation_leavesNoThreads() {
+        FakeSurfaceHolder holder = new FakeSurfaceHolder(SURFACE_WIDTH, SURFACE_HEIGHT);
+        SensorStream sensors = new SensorStream(2);
+
+        for (int c = 0; c < 100; c++) {
+            ActivityController<MainActivity> controller =
+                    Robolectric.buildActivity(MainActivity.class).setup();
+            shadowOf(Looper.getMainLooper()).idle();
+            MainActivity activity = controller.get();
+            RollerSurfaceView view = activity.findViewById(R.id.rollerSurface);
+
+            if (c % 2 == 1) {
+                view.performLongClick();
+            }
+            playOnSurface(activity, view, holder, sensors);
+
+            assertEquals(1, countThreads("RollerThread"));
+            assertEquals(c % 2 == 1 ? chaosWorkers() : 0, countThreads("RollerWorker-"));
+
+            destroy(controller);
+            assertEquals(0, countThreads("RollerThread"));
+            assertEquals(0, countThreads("RollerWorker-"));
+        }
+    }
+
+    /**
+     * Attaches the passed {@link FakeSurfaceHolder} to the passed view, feeds sensor events
+     * through the activity until the game thread has drawn a few frames, then destroys the
+     * surface.
+     *
+     * @param activity {@link MainActivity} to feed sensor events to.
+     * @param view     {@link RollerSurfaceView} to attach the surface to.
+     * @param holder   {@link FakeSurfaceHolder} standing in for the surface.
+     * @param sensors  {@link SensorStream} of synthetic accelerometer values.
+     */
+    private static void playOnSurface(MainActivity activity, RollerSurfaceView view,
+                                      FakeSurfaceHolder holder, SensorStream sensors) {
+        view.surfaceCreated(holder);
+        view.surfaceChanged(holder, PixelFormat.RGBA_8888, SURFACE_WIDTH, SURFACE_HEIGHT);
+
+        int target = holder.getFrames() + 3;
+        long deadline = System.currentTimeMillis() + FRAME_TIMEOUT_MS;
+        while (holder.getFrames() < target) {
+            activity.onSensorChanged(sensors.nextEvent());
+            assertTrue("Game thread stopped drawing", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+
+        view.surfaceDestroyed(holder);
+    }
+
+    /**
+     * Destroys the activity of the passed controller and removes its window, as the system does
+     * when an activity is destroyed.
+     *
+     * @param controller {@link ActivityController} of the activity to destroy.
+     */
+    private static void destroy(ActivityController<MainActivity> controller) {
+        MainActivity activity = controller.get();
+        controller.pause().stop().destroy();
+        if (activity.getWindow().getDecorView().isAttachedToWindow()) {
+            activity.getWindowManager().removeViewImmediate(activity.getWindow().getDecorView());
+        }
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+}
@@ -0,0 +1,150 @@
+package com.davidread.rollerball;
+
+import android.graphics.Canvas;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local tests that run a {@link RollerThread} against a {@link FakeSurfaceHolder} and check how it
+ * handles bad level requests and a frame that fails to draw.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RollerThreadTest {
+
+    /**
+     * Int constant representing the surface width used by these tests.
+     */
+    private static final int SURFACE_WIDTH = 1080;
+
+    /**
+     * Int constant representing the surface height used by these tests.
+     */
+    private static final int SURFACE_HEIGHT = 2200;
+
+    /**
+     * Long constant representing how many milliseconds to wait for the game thread.
+     */
+    private static final long TIMEOUT_MS = 5000;
+
+    /**
+     * {@link TemporaryFolder} holding the level pack files written by each test.
+     */
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * {@link RollerThread} started by a test, stopped after it.
+     */
+    private RollerThread mRollerThread;
+
+    @After
+    public void quitThread() {
+        if (mRollerThread != null) {
+            mRollerThread.quit();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadLevel_rejectsLevelOutsidePack() throws IOException {
+        new RollerThread().loadLevel(LevelPack.open(writeTwoLevels()), 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void loadLevel_rejectsNegativeLevel() throws IOException {
+        new RollerThread().loadLevel(LevelPack.open(writeTwoLevels()), -1);
+    }
+
+    @Test
+    public void corruptLevel_keepsThreadDrawing() throws IOException {
+        File file = writeTwoLevels();
+
+        // Point the second level past the end of the file.
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.seek(LevelPack.HEADER_SIZE + 4);
+            out.writeInt((int) file.length());
+        }
+        LevelPack pack = LevelPack.open(file);
+
+        FakeSurfaceHolder holder = new FakeSurfaceHolder(SURFACE_WIDTH, SURFACE_HEIGHT);
+        mRollerThread = new RollerThread();
+        mRollerThread.loadLevel(pack, 0);
+        mRollerThread.start();
+        mRollerThread.attachSurface(holder, SURFACE_WIDTH, SURFACE_HEIGHT);
+        awaitFrames(holder, 3);
+
+        mRollerThread.loadLevel(pack, 1);
+        awaitFrames(holder, holder.getFrames() + 3);
+        assertTrue(mRollerThread.isAlive());
+    }
+
+    @Test
+    public void failedFrame_endsThreadWithItsException() throws InterruptedException {
+        IllegalStateException failure = new IllegalStateException("Surface lost");
+        FakeSurfaceHolder holder = new FakeSurfaceHolder(SURFACE_WIDTH, SURFACE_HEIGHT) {
+            @Override
+            public Canvas lockCanvas() {
+
+                // An interrupt arriving as the frame fails must not hide the failure.
+                Thread.currentThread().interrupt();
+                throw failure;
+            }
+        };
+
+        AtomicReference<Throwable> uncaught = new AtomicReference<>();
+        mRollerThread = new RollerThread();
+        mRollerThread.setUncaughtExceptionHandler((thread, ex) -> uncaught.set(ex));
+        mRollerThread.start();
+        mRollerThread.attachSurface(holder, SURFACE_WIDTH, SURFACE_HEIGHT);
+
+        mRollerThread.join(TIMEOUT_MS);
+        assertFalse(mRollerThread.isAlive());
+        assertSame(failure, uncaught.get());
+
+        // Surface can still be detached once the thread is gone.
+        mRollerThread.detachSurface();
+    }
+
+    /**
+     * Writes a pack holding two levels with one wall each.
+     *
+     * @return The written {@link File}.
+     * @throws IOException If the file cannot be written.
+     */
+    private File writeTwoLevels() throws IOException {
+        File file = mFolder.newFile();
+        new LevelPackWriter()
+                .addLevel(500, 50)
+                .addWall(100, 250, 166, 50, 10, true)
+                .addLevel(250, 50)
+                .addWall(600, 500, 166, 50, 10, false)
+                .writeTo(file);
+        return file;
+    }
+
+    /**
+     * Waits until the passed {@link FakeSurfaceHolder} has had the passed number of frames
+     * posted.
+     *
+     * @param holder {@link FakeSurfaceHolder} the game thread draws to.
+     * @param frames Number of frames to wait for.
+     */
+    private static void awaitFrames(FakeSurfaceHolder holder, int frames) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (holder.getFrames() < frames) {
+            assertTrue("Game thread stopped drawing", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+}
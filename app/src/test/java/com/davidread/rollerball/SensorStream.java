@@ -0,0 +1,74 @@
+package com.davidread.rollerball;
+
+import android.hardware.SensorEvent;
+
+import org.robolectric.util.ReflectionHelpers;
+import org.robolectric.util.ReflectionHelpers.ClassParameter;
+
+import java.util.Random;
+
+/**
+ * {@link SensorStream} generates a repeatable stream of accelerometer values: a slow tilt
+ * with noise, and a sharp spike now and then that {@link MainActivity} sees as a shake.
+ */
+class SensorStream {
+
+    /**
+     * Int constant representing the number of values generated per simulated second.
+     */
+    static final int VALUES_PER_SECOND = 60;
+
+    /**
+     * {@link Random} used to add noise to the stream.
+     */
+    private final Random mRandom;
+
+    /**
+     * Float array holding the latest accelerometer values.
+     */
+    private final float[] mValues = new float[3];
+
+    /**
+     * Long holding the number of values generated so far.
+     */
+    private long mCount;
+
+    /**
+     * Constructs a new {@link SensorStream}.
+     *
+     * @param seed Seed for the noise, so the stream is repeatable.
+     */
+    SensorStream(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Returns the next accelerometer values. The returned array is reused.
+     *
+     * @return Float array of x, y, and z accelerometer values.
+     */
+    float[] next() {
+        double phase = mCount++ / (double) VALUES_PER_SECOND;
+        mValues[0] = (float) (6 * Math.sin(phase / 3) + mRandom.nextGaussian() * 0.3);
+        mValues[1] = (float) (4 + 4 * Math.cos(phase / 5) + mRandom.nextGaussian() * 0.3);
+        mValues[2] = 9.8f;
+
+        // Sharp spike once every ten seconds.
+        if (mCount % (VALUES_PER_SECOND * 10) == 0) {
+            mValues[0] += 15;
+        }
+        return mValues;
+    }
+
+    /**
+     * Returns a {@link SensorEvent} holding the next accelerometer values.
+     *
+     * @return A {@link SensorEvent} holding the next accelerometer values.
+     */
+    SensorEvent nextEvent() {
+        SensorEvent event = ReflectionHelpers.callConstructor(SensorEvent.class,
+                ClassParameter.from(int.class, 3));
+        System.arraycopy(next(), 0, event.values, 0, 3);
+        return event;
+    }
+}
@@ -0,0 +1,156 @@
+package com.davidread.rollerball;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+
+import static com.davidread.rollerball.LeakChecks.assertHeapFlat;
+import static com.davidread.rollerball.LeakChecks.countThreads;
+import static com.davidread.rollerball.LeakChecks.settledHeap;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Long-running local test that plays many rounds of {@link RollerGame} with a synthetic sensor
+ * stream, and checks that worker threads don't pile up, retained heap stays flat, and tick time
+ * doesn't drift. Surface and activity lifecycles are covered by {@link RollerSurfaceViewTest},
+ * which runs by default.
+ * <p>
+ * Skipped unless the number of simulated minutes to play is given, for example
+ * {@code ./gradlew testDebugUnitTest --tests '*SoakTest' -Drollerball.soak.minutes=240}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SoakTest {
+
+    /**
+     * Int constant representing the surface width used by this test.
+     */
+    private static final int SURFACE_WIDTH = 1080;
+
+    /**
+     * Int constant representing the surface height used by this test.
+     */
+    private static final int SURFACE_HEIGHT = 2200;
+
+    /**
+     * Int constant representing the number of game ticks in a simulated second.
+     */
+    private static final int TICKS_PER_SECOND = 60;
+
+    /**
+     * Int constant representing the number of ticks in a round before the device is shaken.
+     */
+    private static final int ROUND_TICKS = 60;
+
+    /**
+     * Int constant representing how often a round is played in chaos mode.
+     */
+    private static final int CHAOS_ROUND_INTERVAL = 10;
+
+    /**
+     * String constant representing the system property holding the simulated minutes of play.
+     */
+    private static final String SOAK_MINUTES_PROPERTY = "rollerball.soak.minutes";
+
+    /**
+     * Int constant representing the simulated minutes of play measured per timing window. Each
+     * window holds the same mix of normal and chaos rounds.
+     */
+    private static final int WINDOW_MINUTES = 1;
+
+    /**
+     * Int constant representing the fewest timing windows played, whatever the soak length.
+     */
+    private static final int MIN_WINDOWS = 10;
+
+    /**
+     * Double constant representing how many times slower the median window of the last third of
+     * a soak may be than the median window of the first third.
+     */
+    private static final double MAX_TICK_DRIFT = 1.5;
+
+    /**
+     * Plays rounds of {@link RollerGame} for the configured simulated minutes, shaking the device
+     * every {@link #ROUND_TICKS} ticks and playing every {@link #CHAOS_ROUND_INTERVAL}th round in
+     * chaos mode. Checks that retained heap stays flat, and that the median window time of the
+     * last third of play is close to that of the first third, so a single slow window from a GC
+     * pause or a busy host doesn't fail the test.
+     */
+    @Test
+    public void simulatedPlay_keepsHeapAndTickTimeFlat() {
+        assumeNotNull(System.getProperty(SOAK_MINUTES_PROPERTY));
+
+        int minutes = Integer.getInteger(SOAK_MINUTES_PROPERTY, 60);
+        int windowTicks = WINDOW_MINUTES * 60 * TICKS_PER_SECOND;
+        int windows = Math.max(MIN_WINDOWS, minutes / WINDOW_MINUTES);
+
+        RollerGame game = new RollerGame(SURFACE_WIDTH, SURFACE_HEIGHT);
+        SensorStream sensors = new SensorStream(3);
+        PointF velocity = new PointF();
+        boolean chaos = false;
+        long tick = 0;
+        long[] windowNanos = new long[windows];
+        long baselineHeap = 0;
+
+        for (int window = 0; window < windows; window++) {
+            long start = System.nanoTime();
+
+            for (int c = 0; c < windowTicks; c++, tick++) {
+
+                // Start a new round, in chaos mode every so often.
+                if (tick % ROUND_TICKS == 0) {
+                    long round = tick / ROUND_TICKS;
+                    if (chaos != (round % CHAOS_ROUND_INTERVAL == 0)) {
+                        chaos = !chaos;
+                        game.toggleChaosMode();
+                    }
+                    game.newGame();
+                }
+
+                float[] values = sensors.next();
+                velocity.set(values[0], values[1]);
+                game.update(velocity);
+            }
+
+            windowNanos[window] = System.nanoTime() - start;
+
+            // Windows end on a normal round, whose swarm workers have been stopped.
+            assertEquals(0, countThreads("RollerWorker-"));
+
+            // First window warms up the JIT, then the heap baseline is taken.
+            if (window == 0) {
+                baselineHeap = settledHeap();
+            }
+        }
+
+        assertHeapFlat(baselineHeap, settledHeap());
+
+        // Compare the middle of the first third, after warm-up, with the middle of the last.
+        int third = (windows - 1) / 3;
+        long early = median(windowNanos, 1, 1 + third);
+        long late = median(windowNanos, windows - third, windows);
+        assertTrue("Median tick time drifted from " + early / windowTicks + "ns to "
+                + late / windowTicks + "ns", late <= early * MAX_TICK_DRIFT);
+
+        game.release();
+        assertEquals(0, countThreads("RollerWorker-"));
+    }
+
+    /**
+     * Returns the median of the passed range of values.
+     *
+     * @param values Values to take the median of.
+     * @param from   Index of the first value, inclusive.
+     * @param to     Index of the last value, exclusive.
+     * @return The median of the range.
+     */
+    private static long median(long[] values, int from, int to) {
+        long[] range = Arrays.copyOfRange(values, from, to);
+        Arrays.sort(range);
+        return range[range.length / 2];
+    }
+}